@@ -0,0 +1,75 @@
+package com.igrium.replayeditorplus.benchmark;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javafx.application.Platform;
+
+/**
+ * Starts the JavaFX toolkit on Monocle's headless platform with software
+ * rendering, so UI benchmarks run without a display or a GPU.
+ * <p>
+ * JMH forks a fresh JVM for each benchmark, so the platform is selected here
+ * rather than with command line flags.
+ */
+public final class HeadlessFX {
+    private HeadlessFX() {}
+
+    private static boolean started;
+
+    /**
+     * Start the toolkit if it isn't running yet.
+     */
+    public static synchronized void start() {
+        if (started) return;
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+        System.setProperty("prism.text", "t2k");
+        System.setProperty("java.awt.headless", "true");
+
+        CompletableFuture<Void> startup = new CompletableFuture<>();
+        Platform.startup(() -> startup.complete(null));
+        Platform.setImplicitExit(false);
+        startup.join();
+        started = true;
+    }
+
+    /**
+     * Run something on the FX thread and wait for it.
+     * @param callable The task to run.
+     * @return The task's result.
+     */
+    public static <T> T call(Callable<T> callable) {
+        start();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Run something on the FX thread and wait for it.
+     * @param runnable The task to run.
+     */
+    public static void run(Runnable runnable) {
+        call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.igrium.replayeditorplus.benchmark;
+
+import java.util.Random;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Builds Replay Mod timelines for benchmarks without a game. Keyframes are
+ * inserted into the paths directly rather than through {@link SPTimeline}'s
+ * editing methods, which need the mod's settings.
+ */
+public final class StandInTimelines {
+    private StandInTimelines() {}
+
+    /**
+     * Create a random timeline with a spline camera path and a linear time
+     * path. Its interpolations are not baked.
+     *
+     * @param keyframes The number of camera keyframes.
+     * @param seed      The random seed.
+     * @return The timeline.
+     */
+    public static SPTimeline create(int keyframes, long seed) {
+        Random random = new Random(seed);
+        SPTimeline spTimeline = new SPTimeline();
+
+        Path positionPath = spTimeline.getPositionPath();
+        long time = 0;
+        double x = 0, y = 64, z = 0;
+        for (int i = 0; i < keyframes; i++) {
+            Keyframe keyframe = positionPath.insert(time);
+            x += random.nextGaussian() * 5;
+            y += random.nextGaussian();
+            z += random.nextGaussian() * 5;
+            keyframe.setValue(CameraProperties.POSITION, Triple.of(x, y, z));
+            keyframe.setValue(CameraProperties.ROTATION, Triple.of(
+                    (float) (random.nextDouble() * 360 - 180),
+                    (float) (random.nextDouble() * 180 - 90),
+                    0f));
+            time += 200 + random.nextInt(2000);
+        }
+
+        Interpolator spline = new CatmullRomSplineInterpolator(0.5);
+        spline.registerProperty(CameraProperties.POSITION);
+        spline.registerProperty(CameraProperties.ROTATION);
+        for (PathSegment segment : positionPath.getSegments()) {
+            segment.setInterpolator(spline);
+        }
+
+        Path timePath = spTimeline.getTimePath();
+        Interpolator timeInterpolator = new LinearInterpolator();
+        timeInterpolator.registerProperty(TimestampProperty.PROPERTY);
+        timePath.insert(0).setValue(TimestampProperty.PROPERTY, 1000);
+        timePath.insert(Math.max(1, time)).setValue(TimestampProperty.PROPERTY, 1000 + (int) time);
+        for (PathSegment segment : timePath.getSegments()) {
+            segment.setInterpolator(timeInterpolator);
+        }
+
+        return spTimeline;
+    }
+}
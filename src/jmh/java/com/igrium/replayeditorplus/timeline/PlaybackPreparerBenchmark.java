@@ -0,0 +1,87 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.igrium.replayeditorplus.benchmark.StandInTimelines;
+import com.igrium.replayeditorplus.util.IllegalTimelineException;
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Measures preparing timelines for playback across keyframe counts.
+ * <code>ReplayEditor.preparePathsForPlayback</code> only adds a metric around
+ * {@link PlaybackPreparer#prepare}, and needs a running game, so the preparer
+ * is measured directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaybackPreparerBenchmark {
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int keyframes;
+
+    @Param({ "true", "false" })
+    public boolean bake;
+
+    private SPTimeline spTimeline;
+    private List<Keyframe> cameraKeyframes;
+    private final PlaybackPreparer preparer = new PlaybackPreparer();
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setup() throws IllegalTimelineException {
+        spTimeline = StandInTimelines.create(keyframes, 42);
+        cameraKeyframes = List.copyOf(spTimeline.getPositionPath().getKeyframes());
+        preparer.setBakePlayback(bake);
+        preparer.prepare(spTimeline, false);
+    }
+
+    /**
+     * Prepare from scratch: validate, copy and interpolate the whole timeline.
+     */
+    @Benchmark
+    public Timeline fromScratch() throws IllegalTimelineException {
+        preparer.reset();
+        return preparer.prepare(spTimeline, false);
+    }
+
+    /**
+     * Prepare again without changes, like pressing play twice.
+     */
+    @Benchmark
+    public Timeline unchanged() throws IllegalTimelineException {
+        return preparer.prepare(spTimeline, false);
+    }
+
+    /**
+     * Move one keyframe and prepare again, like playing after an edit.
+     */
+    @Benchmark
+    public Timeline valueEdit() throws IllegalTimelineException {
+        Keyframe keyframe = cameraKeyframes.get(random.nextInt(cameraKeyframes.size()));
+        keyframe.setValue(CameraProperties.POSITION,
+                Triple.of(random.nextDouble() * 100, 64d, random.nextDouble() * 100));
+        return preparer.prepare(spTimeline, false);
+    }
+}
@@ -0,0 +1,98 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+
+/**
+ * Compares loading a timeline from {@link TimelineBinaryFormat} against
+ * loading it from {@link TimelineSerialization}'s JSON, across keyframe
+ * counts. Both are read from a file each pass.
+ * <p>
+ * Run with <code>-prof gc</code> to compare the heap each load allocates
+ * (<code>gc.alloc.rate.norm</code>), e.g.
+ * <code>-PjmhArgs="TimelineBinaryFormat -prof gc"</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineBinaryFormatBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int keyframes;
+
+    private final TimelineSerialization serialization = new TimelineSerialization(TestTimelines.REGISTRY, null);
+    private Path jsonFile;
+    private Path binaryFile;
+
+    @Setup
+    public void setup() throws IOException {
+        Map<String, Timeline> timelines = Collections.singletonMap("", TestTimelines.create(keyframes, 42));
+
+        jsonFile = Files.createTempFile("timeline", ".json");
+        Files.writeString(jsonFile, serialization.serialize(timelines));
+
+        binaryFile = Files.createTempFile("timeline", ".retl");
+        TimelineBinaryFormat.write(timelines, binaryFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(jsonFile);
+        Files.deleteIfExists(binaryFile);
+    }
+
+    /**
+     * Read and parse the JSON.
+     */
+    @Benchmark
+    public Timeline json() throws IOException {
+        return serialization.deserialize(Files.readString(jsonFile)).get("");
+    }
+
+    /**
+     * Map the binary file and decode the whole timeline.
+     */
+    @Benchmark
+    public Timeline binary() throws IOException {
+        return TimelineBinaryFormat.open(binaryFile).decode("", TestTimelines.REGISTRY);
+    }
+
+    /**
+     * Map the binary file and read one column in place, like a tool that only
+     * needs the camera's positions.
+     */
+    @Benchmark
+    public double binaryColumn() throws IOException {
+        DoubleBuffer x = TimelineBinaryFormat.open(binaryFile).getColumn("", 0, CameraProperties.POSITION.getId(), 0);
+        double sum = 0;
+        while (x.hasRemaining()) {
+            sum += x.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+
+/**
+ * Compares {@link TimelineCloner} against the serialization round trip it
+ * replaced, across keyframe counts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineClonerBenchmark {
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int keyframes;
+
+    private Timeline timeline;
+    private final TimelineSerialization serialization = new TimelineSerialization(TestTimelines.REGISTRY, null);
+
+    @Setup
+    public void setup() {
+        timeline = TestTimelines.create(keyframes, 42);
+    }
+
+    @Benchmark
+    public Timeline cloner() {
+        return TimelineCloner.clone(TestTimelines.REGISTRY, timeline);
+    }
+
+    @Benchmark
+    public Timeline serialization() throws IOException {
+        String serialized = serialization.serialize(Collections.singletonMap("", timeline));
+        return serialization.deserialize(serialized).get("");
+    }
+}
@@ -0,0 +1,104 @@
+package com.igrium.replayeditorplus.ui.controls;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.igrium.replayeditorplus.benchmark.HeadlessFX;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Measures {@link TimelineTicks#layoutChildren()} across replay lengths and
+ * zoom levels, in both render modes.
+ * <p>
+ * The ticks aren't part of a showing scene, so they're laid out on the
+ * benchmark thread directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineTicksBenchmark {
+
+    public static final double VIEWPORT_WIDTH = 1920;
+    public static final double HEIGHT = 64;
+
+    /**
+     * The length of the replay, in seconds.
+     */
+    @Param({ "60", "600", "3600" })
+    public double length;
+
+    /**
+     * Pixels per second.
+     */
+    @Param({ "1", "10", "100" })
+    public double scale;
+
+    /**
+     * A {@link TimelineTicks.RenderMode}. The enum isn't visible to the
+     * generated benchmark code, so it's passed by name.
+     */
+    @Param({ "CANVAS", "NODES" })
+    public String renderMode;
+
+    private TimelineTicks ticks;
+    private boolean alternateColor;
+    private double scroll;
+
+    @Setup
+    public void setup() {
+        HeadlessFX.start();
+        ticks = new TimelineTicks();
+        ticks.setRenderMode(TimelineTicks.RenderMode.valueOf(renderMode));
+        ticks.setStart(0);
+        ticks.setEnd(length);
+        ticks.resize(length * scale, HEIGHT);
+        setVisible(0);
+        ticks.layoutChildren();
+    }
+
+    /**
+     * Redraw the visible ticks from scratch each pass.
+     */
+    @Benchmark
+    public int rebuild() {
+        // Changing the color is the cheapest way to invalidate the drawn ticks.
+        alternateColor = !alternateColor;
+        ticks.setTickColor(alternateColor ? Color.GRAY : Color.DARKGRAY);
+        ticks.layoutChildren();
+        return ticks.getChildren().size();
+    }
+
+    /**
+     * Scroll by an eighth of the viewport each pass. Ticks are only redrawn
+     * once the viewport leaves the range that's already drawn.
+     */
+    @Benchmark
+    public int scroll() {
+        double maxScroll = Math.max(0, length * scale - VIEWPORT_WIDTH);
+        scroll = maxScroll > 0 ? (scroll + VIEWPORT_WIDTH / 8) % maxScroll : 0;
+        setVisible(scroll);
+        ticks.layoutChildren();
+        return ticks.getChildren().size();
+    }
+
+    private void setVisible(double minX) {
+        double maxX = Math.min(length * scale, minX + VIEWPORT_WIDTH);
+        ticks.setVisibleStart(minX / scale);
+        ticks.setVisibleEnd(maxX / scale);
+    }
+}
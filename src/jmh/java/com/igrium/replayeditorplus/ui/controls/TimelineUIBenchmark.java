@@ -0,0 +1,105 @@
+package com.igrium.replayeditorplus.ui.controls;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.igrium.replayeditorplus.benchmark.HeadlessFX;
+import com.igrium.replayeditorplus.ui.controls.TimelineUI.TimelineNode;
+
+import javafx.geometry.BoundingBox;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Measures {@link TimelineUI#layoutChildren()} with different numbers of
+ * nodes, on a ten minute timeline zoomed in so a screen shows about 20
+ * seconds of it.
+ * <p>
+ * The timeline isn't part of a showing scene, so it's laid out on the
+ * benchmark thread directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineUIBenchmark {
+
+    /**
+     * The length of the timeline, in seconds.
+     */
+    public static final double LENGTH = 600;
+
+    /**
+     * Pixels per second.
+     */
+    public static final double SCALE = 100;
+
+    public static final double VIEWPORT_WIDTH = 1920;
+    public static final double HEIGHT = 128;
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int nodeCount;
+
+    private TimelineUI timeline;
+    private final List<TimelineNode<Rectangle>> nodes = new ArrayList<>();
+    private final Random random = new Random(42);
+    private double scroll;
+    private int nextNode;
+
+    @Setup
+    public void setup() {
+        HeadlessFX.start();
+        timeline = new TimelineUI();
+        timeline.setStart(0);
+        timeline.setEnd(LENGTH);
+
+        for (int i = 0; i < nodeCount; i++) {
+            TimelineNode<Rectangle> node = new TimelineNode<>(new Rectangle(8, 8));
+            node.setTime(random.nextDouble() * LENGTH);
+            nodes.add(node);
+        }
+        timeline.getNodes().addAll(nodes);
+
+        timeline.resize(LENGTH * SCALE, HEIGHT);
+        timeline.setVisibleBounds(new BoundingBox(0, 0, VIEWPORT_WIDTH, HEIGHT));
+        timeline.layoutChildren();
+    }
+
+    /**
+     * Scroll by an eighth of the viewport each pass, like dragging the
+     * scrollbar.
+     */
+    @Benchmark
+    public long scroll() {
+        scroll = (scroll + VIEWPORT_WIDTH / 8) % (LENGTH * SCALE - VIEWPORT_WIDTH);
+        timeline.setVisibleBounds(new BoundingBox(scroll, 0, VIEWPORT_WIDTH, HEIGHT));
+        timeline.layoutChildren();
+        return timeline.getLayoutCount();
+    }
+
+    /**
+     * Move one node each pass, like dragging a keyframe. The nodes are sorted
+     * again on every pass.
+     */
+    @Benchmark
+    public long moveNode() {
+        nodes.get(nextNode++ % nodes.size()).setTime(random.nextDouble() * LENGTH);
+        timeline.layoutChildren();
+        return timeline.getLayoutCount();
+    }
+}
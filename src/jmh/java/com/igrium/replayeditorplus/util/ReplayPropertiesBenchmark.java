@@ -0,0 +1,76 @@
+package com.igrium.replayeditorplus.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.igrium.replayeditorplus.benchmark.HeadlessFX;
+
+/**
+ * Measures {@link ReplayProperties#update()} as called on the render thread
+ * every frame, while the FX thread applies the snapshots on each pulse. A
+ * replay handler needs a running game, so the values it would return are fed
+ * in directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayPropertiesBenchmark {
+
+    public static final int REPLAY_DURATION = 600_000;
+
+    private ReplayProperties properties;
+    private int time;
+
+    @Setup
+    public void setup() {
+        properties = HeadlessFX.call(ReplayProperties::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessFX.run(properties::dispose);
+    }
+
+    /**
+     * The replay is playing, so every frame publishes a new snapshot.
+     */
+    @Benchmark
+    public long playing() {
+        time = (time + 16) % REPLAY_DURATION;
+        properties.update(time, false, -1, REPLAY_DURATION);
+        return properties.getDroppedSnapshots();
+    }
+
+    /**
+     * A timeline is playing, so the replay timestamp changes too.
+     */
+    @Benchmark
+    public long timelinePlaying() {
+        time = (time + 16) % REPLAY_DURATION;
+        properties.update(time, false, time, REPLAY_DURATION);
+        return properties.getDroppedSnapshots();
+    }
+
+    /**
+     * The replay is paused, so nothing changes and nothing is published.
+     */
+    @Benchmark
+    public long paused() {
+        properties.update(time, true, -1, REPLAY_DURATION);
+        return properties.getDroppedSnapshots();
+    }
+}
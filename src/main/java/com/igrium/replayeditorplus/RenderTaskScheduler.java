@@ -0,0 +1,190 @@
+package com.igrium.replayeditorplus;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.jetbrains.annotations.Nullable;
+
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
+
+/**
+ * Runs editor tasks on the render thread within a per-frame time budget.
+ * Tasks submitted with the same key replace each other, so only the latest
+ * one runs, and higher-priority tasks run first. Whatever doesn't fit in a
+ * frame's budget waits for the next frame.
+ */
+public class RenderTaskScheduler {
+
+    /**
+     * The order tasks run in within a frame.
+     */
+    public static enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private static class Task {
+        final Object key;
+        final Runnable runnable;
+        final long submitTime = System.nanoTime();
+        /**
+         * Set once the task has either run or been superseded.
+         */
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        Task(Object key, Runnable runnable) {
+            this.key = key;
+            this.runnable = runnable;
+        }
+    }
+
+    private final Queue<Task>[] queues;
+    private final Map<Object, Task> latestByKey = new ConcurrentHashMap<>();
+
+    private volatile long frameBudget = 2_000_000;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong submittedTasks = new AtomicLong();
+    private final AtomicLong coalescedTasks = new AtomicLong();
+    private final AtomicLong completedTasks = new AtomicLong();
+    private final AtomicLong deferredFrames = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public RenderTaskScheduler() {
+        queues = new Queue[Priority.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Submit a task. May be called from any thread.
+     *
+     * @param key      If not <code>null</code>, any task with an equal key that
+     *                 hasn't run yet is dropped in favor of this one.
+     * @param priority The task's priority.
+     * @param runnable The task.
+     */
+    public void submit(@Nullable Object key, Priority priority, Runnable runnable) {
+        Task task = new Task(key, runnable);
+        submittedTasks.incrementAndGet();
+        queueDepth.incrementAndGet();
+
+        if (key != null) {
+            Task prev = latestByKey.put(key, task);
+            if (prev != null && prev.claimed.compareAndSet(false, true)) {
+                coalescedTasks.incrementAndGet();
+                queueDepth.decrementAndGet();
+            }
+        }
+        queues[priority.ordinal()].add(task);
+    }
+
+    /**
+     * Submit a task that never gets coalesced.
+     * @param priority The task's priority.
+     * @param runnable The task.
+     */
+    public void submit(Priority priority, Runnable runnable) {
+        submit(null, priority, runnable);
+    }
+
+    /**
+     * Run queued tasks until the frame budget is used up. At least one task
+     * runs each frame so nothing can starve. Render thread only.
+     */
+    void runFrame() {
+        if (queueDepth.get() <= 0) return;
+
+        long startTime = System.nanoTime();
+        long budget = frameBudget;
+        boolean ranAny = false;
+
+        for (Queue<Task> queue : queues) {
+            Task task;
+            while ((task = queue.peek()) != null) {
+                if (ranAny && System.nanoTime() - startTime >= budget) {
+                    deferredFrames.incrementAndGet();
+                    EditorMetrics.RENDER_SCHEDULER.stop(startTime);
+                    return;
+                }
+                queue.poll();
+                if (!task.claimed.compareAndSet(false, true)) continue;
+
+                if (task.key != null) latestByKey.remove(task.key, task);
+                queueDepth.decrementAndGet();
+
+                EditorMetrics.RENDER_TASK_LATENCY.stop(task.submitTime);
+                try {
+                    task.runnable.run();
+                } catch (Exception e) {
+                    LogManager.getLogger().error("Error running editor task", e);
+                }
+                completedTasks.incrementAndGet();
+                ranAny = true;
+            }
+        }
+        EditorMetrics.RENDER_SCHEDULER.stop(startTime);
+    }
+
+    /**
+     * Get the maximum time spent running tasks each frame.
+     * @return Budget in nanoseconds.
+     */
+    public long getFrameBudget() {
+        return frameBudget;
+    }
+
+    /**
+     * Set the maximum time spent running tasks each frame.
+     * @param frameBudget Budget in nanoseconds.
+     */
+    public void setFrameBudget(long frameBudget) {
+        this.frameBudget = frameBudget;
+    }
+
+    /**
+     * Get the number of tasks waiting to run, not counting ones that were
+     * superseded.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Get the number of tasks that were submitted.
+     */
+    public long getSubmittedTasks() {
+        return submittedTasks.get();
+    }
+
+    /**
+     * Get the number of tasks that were dropped because a task with the same
+     * key replaced them.
+     */
+    public long getCoalescedTasks() {
+        return coalescedTasks.get();
+    }
+
+    /**
+     * Get the number of tasks that ran.
+     */
+    public long getCompletedTasks() {
+        return completedTasks.get();
+    }
+
+    /**
+     * Get the number of frames that ran out of budget before the queue was
+     * empty.
+     */
+    public long getDeferredFrames() {
+        return deferredFrames.get();
+    }
+}
@@ -1,10 +1,16 @@
 package com.igrium.replayeditorplus;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
 import org.jetbrains.annotations.Nullable;
@@ -12,20 +18,25 @@ import org.jetbrains.annotations.Nullable;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.igrium.craftfx.application.ApplicationType;
 import com.igrium.craftfx.application.CraftApplication;
 import com.igrium.craftfx.util.ThreadUtils;
+import com.igrium.replayeditorplus.RenderTaskScheduler.Priority;
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
+import com.igrium.replayeditorplus.timeline.CameraPathExporter;
+import com.igrium.replayeditorplus.timeline.PlaybackPreparer;
+import com.igrium.replayeditorplus.timeline.TimelineAutosave;
+import com.igrium.replayeditorplus.timeline.TimelinePool;
+import com.igrium.replayeditorplus.timeline.UndoHistory;
+import com.igrium.replayeditorplus.ui.KeyframeLaneSync;
 import com.igrium.replayeditorplus.ui.ReplayEditorUI;
 import com.igrium.replayeditorplus.util.IllegalTimelineException;
 import com.igrium.replayeditorplus.util.ReplayProperties;
 import com.replaymod.pathing.player.RealtimeTimelinePlayer;
-import com.replaymod.pathing.properties.TimestampProperty;
 import com.replaymod.replay.ReplayHandler;
 import com.replaymod.replay.ReplaySender;
-import com.replaymod.replaystudio.pathing.path.Keyframe;
-import com.replaymod.replaystudio.pathing.path.Path;
 import com.replaymod.replaystudio.pathing.path.Timeline;
-import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
 import com.replaymod.simplepathing.ReplayModSimplePathing;
 import com.replaymod.simplepathing.SPTimeline;
 
@@ -43,7 +54,6 @@ import javafx.scene.input.KeyEvent;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 
 public class ReplayEditor extends CraftApplication {
@@ -56,9 +66,56 @@ public class ReplayEditor extends CraftApplication {
     
     protected ReplayEditorUI editorUI;
     
+    private static final ExecutorService PREPARE_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Timeline Preparer %d").setDaemon(true).build());
+
+    /**
+     * Keeps the timeline pool warm. Separate from {@link #PREPARE_EXECUTOR} so
+     * warming never delays a timeline that's about to play.
+     */
+    private static final ExecutorService WARM_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Timeline Warmer %d").setDaemon(true)
+                    .setPriority(Thread.MIN_PRIORITY).build());
+
+    /**
+     * The minimum time between bringing the timeline pool up to date, in
+     * nanoseconds.
+     */
+    private static final long WARM_INTERVAL = 500_000_000;
+
+    private final PlaybackPreparer playbackPreparer = new PlaybackPreparer();
+    private final TimelinePool timelinePool = new TimelinePool(4);
+    @Nullable
+    private volatile ReplayHandler poolReplayHandler;
+    private long lastWarm;
+
+    /**
+     * The preparation that will start playing when it finishes.
+     */
+    @Nullable
+    private volatile CompletableFuture<Timeline> preparation;
+    private final RenderTaskScheduler scheduler = new RenderTaskScheduler();
+    private final SeekDispatcher seekDispatcher = new SeekDispatcher(this::getReplayHandler, scheduler);
+
+    @Nullable
+    private volatile KeyframeLaneSync keyframeLaneSync;
+
     private final Map<KeyCode, Identifier> keybinds = new HashMap<>();
     public final ReplayModSimplePathing mod = ReplayModSimplePathing.instance;
 
+    /**
+     * The default memory budget of the undo history, in bytes.
+     */
+    public static final long UNDO_BUDGET = 8L << 20;
+
+    private final UndoHistory undoHistory = new UndoHistory(mod::getCurrentTimeline, UNDO_BUDGET);
+
+    @Nullable
+    private volatile TimelineAutosave autosave;
+    // The replay the autosave is for. Render thread only.
+    @Nullable
+    private ReplayHandler autosaveHandler;
+
     public ReplayEditor(ApplicationType<?> type, MinecraftClient client) {
         super(type, client);
         keybinds.putAll(ReplayKeybinds.DEFAULTS);
@@ -74,6 +131,8 @@ public class ReplayEditor extends CraftApplication {
         editorUI = loader.getController();
 
         editorUI.initEditor(this);
+        keyframeLaneSync = new KeyframeLaneSync(editorUI.getTimelineWindow().getReplayTimeline(),
+                mod::getCurrentTimeline);
 
         Scene scene = new Scene(root);
         primaryStage.setScene(scene);
@@ -116,6 +175,8 @@ public class ReplayEditor extends CraftApplication {
     }
 
     public void setReplayHandler(ReplayHandler replayHandler) {
+        seekDispatcher.reset();
+        loadTimelinePool(replayHandler);
         if (replayProperties != null) {
             replayProperties.setReplayHandler(replayHandler);
         } else {
@@ -144,7 +205,126 @@ public class ReplayEditor extends CraftApplication {
         ReplayHandler handler = getReplayHandler();
         if (handler == null) return;
 
-        ThreadUtils.onRenderThread(() -> handler.getReplaySender().setReplaySpeed(speed));
+        scheduler.submit("speed", Priority.NORMAL, () -> handler.getReplaySender().setReplaySpeed(speed));
+    }
+
+    /**
+     * Runs the editor's tasks on the render thread. Tasks submitted here only
+     * run while the editor is open.
+     */
+    public RenderTaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * The undo history of the current timeline. Must only be modified on the
+     * render thread.
+     */
+    public UndoHistory getUndoHistory() {
+        return undoHistory;
+    }
+
+    /**
+     * Undo the last change to the current timeline on the render thread. May
+     * be called from any thread.
+     */
+    public void undo() {
+        scheduler.submit(Priority.HIGH, undoHistory::undo);
+    }
+
+    /**
+     * Redo the last undone change to the current timeline on the render
+     * thread. May be called from any thread.
+     */
+    public void redo() {
+        scheduler.submit(Priority.HIGH, undoHistory::redo);
+    }
+
+    /**
+     * The autosave of the current timeline, or <code>null</code> if it hasn't
+     * started yet.
+     */
+    @Nullable
+    public TimelineAutosave getAutosave() {
+        return autosave;
+    }
+
+    /**
+     * Write a full snapshot of the timeline in the background and keep it as
+     * the version to revert to. May be called from any thread.
+     * @return A future that completes once the snapshot is written.
+     */
+    public CompletableFuture<Void> saveTimeline() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        scheduler.submit(Priority.NORMAL, () -> {
+            TimelineAutosave autosave = this.autosave;
+            if (autosave == null) {
+                future.completeExceptionally(new IllegalStateException("Autosave hasn't started."));
+                return;
+            }
+            autosave.save().whenComplete((v, e) -> {
+                if (e != null) future.completeExceptionally(e);
+                else future.complete(null);
+            });
+        });
+        return future;
+    }
+
+    /**
+     * Replace the timeline with the version last written by
+     * {@link #saveTimeline}. May be called from any thread.
+     * @return A future that completes with whether there was a saved version.
+     */
+    public CompletableFuture<Boolean> revertTimeline() {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        scheduler.submit(Priority.NORMAL, () -> {
+            TimelineAutosave autosave = this.autosave;
+            if (autosave == null) {
+                future.complete(false);
+                return;
+            }
+            autosave.revert().whenComplete((reverted, e) -> {
+                if (e != null) future.completeExceptionally(e);
+                else future.complete(reverted);
+            });
+        });
+        return future;
+    }
+
+    private void startAutosave(ReplayHandler handler) {
+        if (mod.getCurrentTimeline() == null) return;
+        autosaveHandler = handler;
+
+        java.nio.file.Path root = MinecraftClient.getInstance().runDirectory.toPath()
+                .resolve("replayeditorplus").resolve("autosave");
+        TimelineAutosave.directoryFor(root, handler.getReplayFile()).whenComplete((directory, e) -> {
+            if (e != null) {
+                LogManager.getLogger().error("Unable to identify replay; autosave is disabled.", e);
+                return;
+            }
+            scheduler.submit(Priority.NORMAL, () -> {
+                if (autosaveHandler != handler) return;
+                TimelineAutosave autosave = new TimelineAutosave(directory, mod::getCurrentTimeline, scheduler);
+                this.autosave = autosave;
+                autosave.start();
+            });
+        });
+    }
+
+    /**
+     * Called on the render thread when a replay is about to close. Marks its
+     * autosave as clean, as Replay Mod saves the timeline with the replay.
+     */
+    void onReplayClosing(ReplayHandler replayHandler) {
+        TimelineAutosave autosave = this.autosave;
+        if (autosave != null && autosaveHandler == replayHandler) autosave.close();
+    }
+
+    /**
+     * Coalesces jump requests so scrubbing doesn't flood the render thread.
+     */
+    public SeekDispatcher getSeekDispatcher() {
+        return seekDispatcher;
     }
 
     /**
@@ -158,6 +338,7 @@ public class ReplayEditor extends CraftApplication {
     @Override
     protected void onClosed() {
         editorUI.close();
+        replayProperties.dispose();
     }
 
     public Map<KeyCode, Identifier> getKeybinds() {
@@ -169,11 +350,15 @@ public class ReplayEditor extends CraftApplication {
     }
 
     /**
-     * Stop playing the current timeline. If the timeline is not playing, this does
-     * nothing.
+     * Stop playing the current timeline, or stop it from starting if it's still
+     * being prepared. If the timeline is not playing, this does nothing.
      */
     public void stopTimeline() {
-        ThreadUtils.onRenderThread(() -> replayProperties.getTimelinePlayer().getFuture().cancel(false));
+        cancelPreparation();
+        scheduler.submit("timeline", Priority.HIGH, () -> {
+            RealtimeTimelinePlayer player = replayProperties.getTimelinePlayer();
+            if (player != null && player.isActive()) player.getFuture().cancel(false);
+        });
     }
 
     /**
@@ -183,32 +368,71 @@ public class ReplayEditor extends CraftApplication {
      * @param startTime The time to start playing at, in milliseconds.
      */
     public void startTimeline(int startTime) {
-        ThreadUtils.onRenderThread(() -> startTimelineImpl(startTime));
+        scheduler.submit("timeline", Priority.HIGH, () -> startTimelineImpl(startTime,
+                () -> preparePathsForPlaybackAsync(false)));
+    }
+
+    /**
+     * Attempt to start playing a timeline from the timeline pool. This is a
+     * high-level function that displays alerts instead of throwing.
+     * 
+     * @param name      The name of the timeline in the pool.
+     * @param startTime The time to start playing at, in milliseconds.
+     * @see #getTimelinePool()
+     */
+    public void startTimeline(String name, int startTime) {
+        scheduler.submit("timeline", Priority.HIGH, () -> startTimelineImpl(startTime,
+                () -> timelinePool.prepareAsync(name, false, PREPARE_EXECUTOR)));
     }
     
 
-    private void startTimelineImpl(int startTime) {
+    private void startTimelineImpl(int startTime, Supplier<CompletableFuture<Timeline>> prepare) {
         RealtimeTimelinePlayer player = replayProperties.getTimelinePlayer();
+        if (player == null) return;
         if (player.isActive()) {
             player.getFuture().cancel(false);
         }
+        cancelPreparation();
 
-        Timeline timeline;
+        CompletableFuture<Timeline> preparation;
         try {
-            timeline = preparePathsForPlayback(false);
-        } catch (IllegalTimelineException e) {
-            Platform.runLater(() -> {
-                Alert alert = new Alert(AlertType.ERROR);
-                alert.setHeaderText("Unable to start playback.");
-                alert.setContentText(e.getMessage());
-                alert.initOwner(getStage());
-                alert.initModality(Modality.APPLICATION_MODAL);
-    
-                alert.show();
-            });
+            preparation = prepare.get();
+        } catch (IllegalArgumentException e) {
+            LogManager.getLogger().error("Unable to start playback", e);
             return;
         }
+        this.preparation = preparation;
+
+        // Only the start itself goes back to the render thread.
+        preparation.whenComplete((timeline, e) -> scheduler.submit("timelineStart", Priority.HIGH, () -> {
+            if (this.preparation != preparation) return;
+            this.preparation = null;
+
+            if (e == null) {
+                playTimeline(timeline, startTime);
+                return;
+            }
+
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof IllegalTimelineException) {
+                Platform.runLater(() -> {
+                    Alert alert = new Alert(AlertType.ERROR);
+                    alert.setHeaderText("Unable to start playback.");
+                    alert.setContentText(cause.getMessage());
+                    alert.initOwner(getStage());
+                    alert.initModality(Modality.APPLICATION_MODAL);
+        
+                    alert.show();
+                });
+            } else if (!(cause instanceof CancellationException)) {
+                LogManager.getLogger().error("Error preparing timeline", cause);
+            }
+        }));
+    }
 
+    private void playTimeline(Timeline timeline, int startTime) {
+        RealtimeTimelinePlayer player = replayProperties.getTimelinePlayer();
+        if (player == null) return;
         ListenableFuture<Void> future = player.start(timeline, startTime);
         
         Futures.addCallback(future, new FutureCallback<>() {
@@ -232,6 +456,16 @@ public class ReplayEditor extends CraftApplication {
         }, ThreadUtils::onRenderThread);
     }
 
+    /**
+     * Cancel the timeline preparation that's in progress, if any, so it won't
+     * start playing when it finishes.
+     */
+    private void cancelPreparation() {
+        CompletableFuture<Timeline> preparation = this.preparation;
+        this.preparation = null;
+        if (preparation != null) preparation.cancel(false);
+    }
+
     /**
      * Prepare the paths in this replay file for playback.
      * 
@@ -242,48 +476,150 @@ public class ReplayEditor extends CraftApplication {
      *                                  unable to play.
      */
     public Timeline preparePathsForPlayback(boolean ignoreTimeKeyframes) throws IllegalTimelineException {
-        SPTimeline spTimeline = mod.getCurrentTimeline();
-        validatePathsForPlayback(spTimeline, ignoreTimeKeyframes);
-        
+        long startTime = System.nanoTime();
         try {
-            TimelineSerialization serialization = new TimelineSerialization(spTimeline, null);
-            String serialized = serialization.serialize(Collections.singletonMap("", spTimeline.getTimeline()));
-            Timeline timeline = serialization.deserialize(serialized).get("");
-            timeline.getPaths().forEach(Path::updateAll);
-            return timeline;
-        } catch (Exception e) {
-            throw new RuntimeException("Error cloning timeline.", e);
+            return playbackPreparer.prepare(mod.getCurrentTimeline(), ignoreTimeKeyframes);
+        } finally {
+            EditorMetrics.TIMELINE_PREPARE.stop(startTime);
         }
+    }
 
+    /**
+     * Prepare the paths in this replay file for playback, interpolating them on
+     * a worker thread. Must be called on the render thread.
+     * 
+     * @param ignoreTimeKeyframes Don't check whether there's enough time
+     *                            keyframes.
+     * @return A future that completes with the playable paths, or exceptionally
+     *         with an {@link IllegalTimelineException} if an error in the
+     *         active timeline makes it unable to play.
+     * @see PlaybackPreparer#prepareAsync
+     */
+    public CompletableFuture<Timeline> preparePathsForPlaybackAsync(boolean ignoreTimeKeyframes) {
+        long startTime = System.nanoTime();
+        CompletableFuture<Timeline> future = playbackPreparer.prepareAsync(mod.getCurrentTimeline(),
+                ignoreTimeKeyframes, PREPARE_EXECUTOR);
+        future.whenComplete((timeline, e) -> EditorMetrics.TIMELINE_PREPARE.stop(startTime));
+        return future;
     }
 
-    private void validatePathsForPlayback(SPTimeline timeline, boolean ignoreTimeKeyframes)
-            throws IllegalTimelineException {
-        timeline.getTimeline().getPaths().forEach(Path::updateAll);
+    /**
+     * Sample the current timeline's camera at a fixed rate and write it to a
+     * file, without rendering anything. Must be called on the render thread.
+     * <p>
+     * The timeline is prepared separately from playback, so editing it or
+     * playing it while the export runs doesn't affect the result.
+     *
+     * @param file       The file to write to.
+     * @param format     The format to write.
+     * @param sampleRate The number of samples per second.
+     * @return A future that completes with the number of samples written.
+     * @see CameraPathExporter
+     */
+    public CompletableFuture<Long> exportCameraPath(java.nio.file.Path file, CameraPathExporter.Format format,
+            double sampleRate) {
+        CameraPathExporter exporter = new CameraPathExporter(sampleRate, format);
+        exporter.setFov(MinecraftClient.getInstance().options.getFov().getValue());
+
+        PlaybackPreparer preparer = new PlaybackPreparer();
+        preparer.setBakePlayback(false);
+        return preparer.prepareAsync(mod.getCurrentTimeline(), true, PREPARE_EXECUTOR).thenApplyAsync(timeline -> {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                return exporter.export(timeline, out);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, PREPARE_EXECUTOR);
+    }
 
-        if (timeline.getPositionPath().getSegments().isEmpty()) {
-            throw new IllegalTimelineException(timeline.getTimeline(), Text.translatable("replaymod.chat.morekeyframes"));
-        }
+    /**
+     * Get the preparer that readies this editor's timelines for playback.
+     */
+    public PlaybackPreparer getPlaybackPreparer() {
+        return playbackPreparer;
+    }
 
-        if (ignoreTimeKeyframes) return;
+    /**
+     * Named timelines that are kept prepared in the background, such as
+     * alternate takes. The keyframe presets saved in the replay are registered
+     * when it's opened. Must only be used on the render thread.
+     */
+    public TimelinePool getTimelinePool() {
+        return timelinePool;
+    }
 
-        int lastTime = 0;
-        for (Keyframe keyframe : timeline.getTimePath().getKeyframes()) {
-            int time = keyframe.getValue(TimestampProperty.PROPERTY).orElseThrow(IllegalStateException::new);
-            if (time < lastTime) {
-                throw new IllegalTimelineException(timeline.getTimeline(),
-                        Text.empty().append(Text.translatable("replaymod.chat.morekeyframes")
-                                .append(" ").append("replaymod.error.negativetime2")
-                                .append(" ").append("replaymod.error.negativetime3")));
+    /**
+     * Register the keyframe presets saved in a replay as the timeline pool, so
+     * they play without preparing from scratch. The file is read in the
+     * background.
+     */
+    private void loadTimelinePool(@Nullable ReplayHandler replayHandler) {
+        poolReplayHandler = replayHandler;
+        scheduler.submit("timelinePool", Priority.LOW, timelinePool::clear);
+        if (replayHandler == null) return;
+
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return replayHandler.getReplayFile().getTimelines(new SPTimeline());
+            } catch (IOException e) {
+                throw new CompletionException(e);
             }
-        }
+        }, WARM_EXECUTOR).whenComplete((timelines, e) -> {
+            if (e != null) {
+                LogManager.getLogger().error("Unable to read keyframe presets.", e);
+                return;
+            }
+            scheduler.submit("timelinePool", Priority.LOW, () -> {
+                // Another replay was opened while reading.
+                if (poolReplayHandler != replayHandler) return;
+                timelinePool.clear();
+                for (Map.Entry<String, Timeline> entry : timelines.entrySet()) {
+                    timelinePool.put(entry.getKey(), new SPTimeline(entry.getValue()));
+                }
+            });
+        });
+    }
 
-        if (timeline.getTimePath().getSegments().isEmpty()) {
-            throw new IllegalTimelineException(timeline.getTimeline(), Text.translatable("replaymod.chat.morekeyframes"));
-        }
+    /**
+     * Discard the cached playback preparation, forcing the next call to
+     * {@link #preparePathsForPlayback} to prepare the timeline from scratch.
+     * Edits to the timeline are detected automatically; this is only needed if
+     * something outside of the timeline affects playback.
+     */
+    public void invalidatePreparedTimeline() {
+        playbackPreparer.reset();
+        timelinePool.reset();
     }
     
     void eachFrame() {
         if (replayProperties != null) replayProperties.update();
+        seekDispatcher.onFrame();
+        scheduler.runFrame();
+
+        // Don't re-interpolate a take underneath the player, or while one is about to play.
+        RealtimeTimelinePlayer player = replayProperties != null ? replayProperties.getTimelinePlayer() : null;
+        long now = System.nanoTime();
+        if (now - lastWarm >= WARM_INTERVAL && (player == null || !player.isActive()) && preparation == null) {
+            lastWarm = now;
+            timelinePool.warm(WARM_EXECUTOR);
+        }
+
+        KeyframeLaneSync keyframeLaneSync = this.keyframeLaneSync;
+        if (keyframeLaneSync != null) keyframeLaneSync.onFrame();
+        undoHistory.onFrame();
+
+        // Each replay gets its own autosave.
+        ReplayHandler handler = getReplayHandler();
+        TimelineAutosave autosave = this.autosave;
+        if (handler != autosaveHandler) {
+            if (autosave != null) autosave.close();
+            this.autosave = null;
+            autosaveHandler = null;
+            if (handler != null) startAutosave(handler);
+        } else if (autosave != null) {
+            autosave.onFrame();
+        }
+
+        EditorMetrics.sampleFxLatency();
     }
 }
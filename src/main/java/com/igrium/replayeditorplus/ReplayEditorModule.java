@@ -1,9 +1,13 @@
 package com.igrium.replayeditorplus;
+import org.jetbrains.annotations.Nullable;
+
 import com.igrium.craftfx.application.ApplicationManager;
+import com.igrium.replayeditorplus.replay.ReplayIndexer;
 import com.replaymod.core.Module;
 import com.replaymod.lib.de.johni0702.minecraft.gui.utils.Event;
 import com.replaymod.lib.de.johni0702.minecraft.gui.utils.EventRegistrations;
 import com.replaymod.replay.ReplayHandler;
+import com.replaymod.replay.events.ReplayClosingCallback;
 import com.replaymod.replay.events.ReplayOpenedCallback;
 
 public class ReplayEditorModule extends EventRegistrations implements Module {
@@ -12,8 +16,12 @@ public class ReplayEditorModule extends EventRegistrations implements Module {
         return ReplayEditorPlus.getInstance().getModule();
     }
 
+    @Nullable
+    private ReplayIndexer replayIndexer;
+
     public ReplayEditorModule() {
         on(ReplayOpenedCallback.EVENT, this::onReplayOpened);
+        on(ReplayClosingCallback.EVENT, this::onReplayClosing);
     }
     
     @Override
@@ -21,7 +29,27 @@ public class ReplayEditorModule extends EventRegistrations implements Module {
         return super.on(event, listener);
     }
 
+    /**
+     * Get the indexer of the currently open replay.
+     * @return The indexer, or <code>null</code> if no replay is open.
+     */
+    @Nullable
+    public ReplayIndexer getReplayIndexer() {
+        return replayIndexer;
+    }
+
     protected void onReplayOpened(ReplayHandler replayHandler) {
+        if (replayIndexer != null) replayIndexer.cancel();
+        replayIndexer = ReplayIndexer.start(replayHandler);
         ApplicationManager.getInstance().launch(ReplayEditorPlus.EDITOR, editor -> editor.setReplayHandler(replayHandler));
     }
+
+    protected void onReplayClosing(ReplayHandler replayHandler) {
+        if (replayIndexer != null) {
+            replayIndexer.cancel();
+            replayIndexer = null;
+        }
+        ApplicationManager.getInstance().getAppInstance(ReplayEditorPlus.EDITOR)
+                .ifPresent(editor -> editor.onReplayClosing(replayHandler));
+    }
 }
@@ -2,6 +2,7 @@ package com.igrium.replayeditorplus;
 
 import com.igrium.craftfx.application.ApplicationManager;
 import com.igrium.craftfx.application.ApplicationType;
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
 
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
@@ -30,7 +31,11 @@ public class ReplayEditorPlus implements ClientModInitializer {
         
         WorldRenderEvents.START.register(context -> {
             ApplicationManager.getInstance().getAppInstance(EDITOR)
-                    .ifPresent(editor -> editor.eachFrame());
+                    .ifPresent(editor -> {
+                        long startTime = System.nanoTime();
+                        editor.eachFrame();
+                        EditorMetrics.FRAME_HOOK.stop(startTime);
+                    });
         });
     }
 
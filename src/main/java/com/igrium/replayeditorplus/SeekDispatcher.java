@@ -0,0 +1,178 @@
+package com.igrium.replayeditorplus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.igrium.replayeditorplus.RenderTaskScheduler.Priority;
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
+import com.replaymod.replay.ReplayHandler;
+
+/**
+ * Dispatches replay jumps to the render thread, keeping only the latest
+ * requested target. Requests that are superseded before they're dispatched are
+ * skipped, and jumps are limited to a maximum rate so that drag-scrubbing
+ * doesn't flood the render thread.
+ */
+public class SeekDispatcher {
+
+    private static record SeekRequest(int time, long requestTime) {
+    }
+
+    private final Supplier<ReplayHandler> replayHandler;
+    private final RenderTaskScheduler scheduler;
+
+    private final AtomicReference<SeekRequest> pending = new AtomicReference<>();
+
+    /**
+     * The request of the jump that was last performed, until the next frame.
+     * Render thread only.
+     */
+    @Nullable
+    private SeekRequest awaitingFrame;
+    private volatile boolean jumpQueued;
+    private long lastJumpTime;
+
+    private volatile double maxSeekRate = 20;
+
+    private final AtomicLong requestedSeeks = new AtomicLong();
+    private final AtomicLong skippedSeeks = new AtomicLong();
+    private final AtomicLong performedSeeks = new AtomicLong();
+    private volatile long lastLatency = -1;
+    private volatile long averageLatency = -1;
+
+    /**
+     * Create a seek dispatcher.
+     * @param replayHandler Supplies the replay handler to jump with.
+     * @param scheduler     The scheduler to run jumps on.
+     */
+    public SeekDispatcher(Supplier<ReplayHandler> replayHandler, RenderTaskScheduler scheduler) {
+        this.replayHandler = replayHandler;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Request a jump to a time in the replay. May be called from any thread.
+     * @param time The time to jump to, in milliseconds.
+     */
+    public void requestSeek(int time) {
+        requestedSeeks.incrementAndGet();
+        if (pending.getAndSet(new SeekRequest(time, System.nanoTime())) != null) {
+            skippedSeeks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Called on the render thread at the start of every frame.
+     */
+    void onFrame() {
+        long now = System.nanoTime();
+
+        // The last jump has been applied; this is the first frame at its time.
+        if (awaitingFrame != null) {
+            recordLatency(now - awaitingFrame.requestTime());
+            awaitingFrame = null;
+        }
+
+        if (jumpQueued || pending.get() == null) return;
+
+        double maxRate = maxSeekRate;
+        if (maxRate > 0 && now - lastJumpTime < 1e9 / maxRate) return;
+
+        ReplayHandler handler = replayHandler.get();
+        if (handler == null) return;
+
+        SeekRequest request = pending.getAndSet(null);
+        if (request == null) return;
+
+        jumpQueued = true;
+        lastJumpTime = now;
+        scheduler.submit("seek", Priority.HIGH, () -> {
+            try {
+                boolean backward = request.time() < handler.getReplaySender().currentTimeStamp();
+                long startTime = System.nanoTime();
+                handler.doJump(request.time(), true);
+                (backward ? EditorMetrics.BACKWARD_SEEK : EditorMetrics.SEEK).stop(startTime);
+                performedSeeks.incrementAndGet();
+                awaitingFrame = request;
+            } finally {
+                jumpQueued = false;
+            }
+        });
+    }
+
+    /**
+     * Forget any pending or queued jump, so that a jump task that never ran
+     * can't block later seeks. Call when the replay changes. May be called
+     * from any thread.
+     */
+    public void reset() {
+        pending.set(null);
+        jumpQueued = false;
+    }
+
+    private void recordLatency(long latency) {
+        lastLatency = latency;
+        long average = averageLatency;
+        averageLatency = average < 0 ? latency : (average * 7 + latency) / 8;
+    }
+
+    /**
+     * Get the maximum number of jumps that are performed per second.
+     * @return Max seek rate. If zero or less, jumps aren't rate-limited.
+     */
+    public double getMaxSeekRate() {
+        return maxSeekRate;
+    }
+
+    /**
+     * Set the maximum number of jumps that are performed per second.
+     * @param maxSeekRate Max seek rate. If zero or less, jumps aren't
+     *                    rate-limited.
+     */
+    public void setMaxSeekRate(double maxSeekRate) {
+        this.maxSeekRate = maxSeekRate;
+    }
+
+    /**
+     * Get the number of seeks that were requested.
+     */
+    public long getRequestedSeeks() {
+        return requestedSeeks.get();
+    }
+
+    /**
+     * Get the number of seeks that were superseded before they were performed.
+     */
+    public long getSkippedSeeks() {
+        return skippedSeeks.get();
+    }
+
+    /**
+     * Get the number of jumps that were actually performed.
+     */
+    public long getPerformedSeeks() {
+        return performedSeeks.get();
+    }
+
+    /**
+     * Get the time between the last performed seek being requested and the
+     * first frame at its time.
+     * @return Latency in nanoseconds, or <code>-1</code> if no seek has been
+     *         performed.
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    /**
+     * Get a moving average of the seek latency.
+     * @return Average latency in nanoseconds, or <code>-1</code> if no seek has
+     *         been performed.
+     */
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+}
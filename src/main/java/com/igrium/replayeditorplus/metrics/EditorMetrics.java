@@ -0,0 +1,128 @@
+package com.igrium.replayeditorplus.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.igrium.craftfx.util.ThreadUtils;
+
+import javafx.application.Platform;
+
+/**
+ * Timings and counters for the editor's hot paths. Each timer is also emitted
+ * as a Flight Recorder event under the "Replay Editor Plus" category.
+ */
+public final class EditorMetrics {
+    private EditorMetrics() {}
+
+    /**
+     * The editor's per-frame hook, run from <code>WorldRenderEvents.START</code>.
+     */
+    public static final MetricTimer FRAME_HOOK = new MetricTimer("frameHook");
+
+    /**
+     * The time between a task being posted to the render thread and it running.
+     */
+    public static final MetricTimer RENDER_TASK_LATENCY = new MetricTimer("renderTaskLatency");
+
+    /**
+     * The time between a task being posted to the FX thread and it running.
+     * Sampled at most once per frame, and only while the metrics are shown or
+     * recorded.
+     */
+    public static final MetricTimer FX_TASK_LATENCY = new MetricTimer("fxTaskLatency");
+
+    /**
+     * Running the editor's scheduled render-thread tasks each frame.
+     */
+    public static final MetricTimer RENDER_SCHEDULER = new MetricTimer("renderScheduler");
+
+    /**
+     * Preparing a timeline for playback.
+     */
+    public static final MetricTimer TIMELINE_PREPARE = new MetricTimer("timelinePrepare");
+
+    /**
+     * Performing a replay jump.
+     */
+    public static final MetricTimer SEEK = new MetricTimer("seek");
+
+    /**
+     * Performing a replay jump to an earlier time, which restarts the replay
+     * and re-reads it up to the target.
+     */
+    public static final MetricTimer BACKWARD_SEEK = new MetricTimer("backwardSeek");
+
+    /**
+     * A layout pass of a timeline control.
+     */
+    public static final MetricTimer TIMELINE_LAYOUT = new MetricTimer("timelineLayout");
+
+    private static final List<MetricTimer> TIMERS = List.of(FRAME_HOOK, RENDER_TASK_LATENCY, FX_TASK_LATENCY,
+            RENDER_SCHEDULER, TIMELINE_PREPARE, SEEK, BACKWARD_SEEK, TIMELINE_LAYOUT);
+
+    private static final AtomicInteger fxQueueDepth = new AtomicInteger();
+    private static volatile boolean fxProbePending;
+    private static volatile boolean displayed;
+
+    /**
+     * Get all the timers.
+     */
+    public static List<MetricTimer> getTimers() {
+        return TIMERS;
+    }
+
+    /**
+     * Get the number of tracked tasks that have been posted to the FX thread
+     * but haven't run yet.
+     */
+    public static int getFxQueueDepth() {
+        return fxQueueDepth.get();
+    }
+
+    /**
+     * Run a task on the FX thread, counting it towards the FX queue depth
+     * until it runs.
+     * @param task The task.
+     * @see ThreadUtils#onFXThread
+     */
+    public static void onFXThread(Runnable task) {
+        fxQueueDepth.incrementAndGet();
+        ThreadUtils.onFXThread(() -> {
+            fxQueueDepth.decrementAndGet();
+            task.run();
+        });
+    }
+
+    /**
+     * Set whether the metrics are being shown on screen. Metrics that cost
+     * something to sample are only sampled while they're shown or Flight
+     * Recorder is recording them.
+     * @param displayed Whether the metrics are shown.
+     */
+    public static void setDisplayed(boolean displayed) {
+        EditorMetrics.displayed = displayed;
+    }
+
+    /**
+     * Post a probe to the FX thread to sample its latency, unless one is
+     * already waiting or nobody is looking. Called once per frame.
+     */
+    public static void sampleFxLatency() {
+        if (fxProbePending || !(displayed || TimingEvent.isEnabled())) return;
+        fxProbePending = true;
+        long postTime = System.nanoTime();
+        fxQueueDepth.incrementAndGet();
+        Platform.runLater(() -> {
+            fxQueueDepth.decrementAndGet();
+            FX_TASK_LATENCY.stop(postTime);
+            fxProbePending = false;
+        });
+    }
+
+    /**
+     * Forget everything that was recorded.
+     */
+    public static void reset() {
+        TIMERS.forEach(MetricTimer::reset);
+    }
+}
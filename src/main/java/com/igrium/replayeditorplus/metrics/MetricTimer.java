@@ -0,0 +1,97 @@
+package com.igrium.replayeditorplus.metrics;
+
+/**
+ * Records how long something takes each time it happens. Every recording is
+ * also emitted as a {@link TimingEvent} when Flight Recorder is running.
+ */
+public final class MetricTimer {
+    private final String name;
+
+    private long count;
+    private long total;
+    private long last = -1;
+    private long max;
+    private long average = -1;
+
+    MetricTimer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name this timer reports under.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record a duration that started at a given time.
+     * @param startTime The start time, from {@link System#nanoTime()}.
+     */
+    public void stop(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Record a duration.
+     * @param nanos The duration in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        count++;
+        total += nanos;
+        last = nanos;
+        max = Math.max(max, nanos);
+        average = average < 0 ? nanos : (average * 15 + nanos) / 16;
+        TimingEvent.emit(name, nanos);
+    }
+
+    /**
+     * Get the number of recorded durations.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the sum of all recorded durations, in nanoseconds.
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the last recorded duration.
+     * @return Duration in nanoseconds, or <code>-1</code> if nothing was
+     *         recorded.
+     */
+    public synchronized long getLast() {
+        return last;
+    }
+
+    /**
+     * Get the longest recorded duration, in nanoseconds.
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Get a moving average of the recorded durations.
+     * @return Average in nanoseconds, or <code>-1</code> if nothing was
+     *         recorded.
+     */
+    public synchronized long getAverage() {
+        return average;
+    }
+
+    /**
+     * Forget everything that was recorded.
+     */
+    public synchronized void reset() {
+        count = 0;
+        total = 0;
+        last = -1;
+        max = 0;
+        average = -1;
+    }
+}
@@ -0,0 +1,45 @@
+package com.igrium.replayeditorplus.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for a single {@link MetricTimer} recording.
+ */
+@Name("com.igrium.replayeditorplus.Timing")
+@Label("Editor Timing")
+@Description("Time taken by a part of the replay editor.")
+@Category("Replay Editor Plus")
+@StackTrace(false)
+class TimingEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(TimingEvent.class);
+
+    @Label("Metric")
+    String metric;
+
+    @Label("Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long duration;
+
+    /**
+     * Whether Flight Recorder is currently recording these events.
+     */
+    static boolean isEnabled() {
+        return TYPE.isEnabled();
+    }
+
+    static void emit(String metric, long duration) {
+        if (!TYPE.isEnabled()) return;
+        TimingEvent event = new TimingEvent();
+        event.metric = metric;
+        event.duration = duration;
+        event.commit();
+    }
+}
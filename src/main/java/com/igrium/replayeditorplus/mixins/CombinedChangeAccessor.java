@@ -0,0 +1,16 @@
+package com.igrium.replayeditorplus.mixins;
+
+import java.util.List;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import com.replaymod.replaystudio.pathing.change.Change;
+import com.replaymod.replaystudio.pathing.change.CombinedChange;
+
+@Mixin(value = CombinedChange.class, remap = false)
+public interface CombinedChangeAccessor {
+
+    @Accessor("changes")
+    List<Change> getChanges();
+}
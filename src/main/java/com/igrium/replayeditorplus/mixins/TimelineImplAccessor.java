@@ -0,0 +1,19 @@
+package com.igrium.replayeditorplus.mixins;
+
+import java.util.Deque;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+import com.replaymod.replaystudio.pathing.change.Change;
+import com.replaymod.replaystudio.pathing.impl.TimelineImpl;
+
+@Mixin(value = TimelineImpl.class, remap = false)
+public interface TimelineImplAccessor {
+
+    @Accessor("undoStack")
+    Deque<Change> getUndoStack();
+
+    @Accessor("redoStack")
+    Deque<Change> getRedoStack();
+}
@@ -0,0 +1,33 @@
+package com.igrium.replayeditorplus.mixins;
+
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import com.igrium.replayeditorplus.timeline.ObservableTimeline;
+import com.replaymod.replaystudio.pathing.change.Change;
+import com.replaymod.replaystudio.pathing.impl.TimelineImpl;
+
+@Mixin(value = TimelineImpl.class, remap = false)
+public class TimelineImplMixin implements ObservableTimeline {
+
+    @Unique
+    @Nullable
+    private Consumer<Change> changeListener;
+
+    @Override
+    public void setChangeListener(@Nullable Consumer<Change> listener) {
+        this.changeListener = listener;
+    }
+
+    @Inject(method = "pushChange", at = @At("HEAD"))
+    private void onPushChange(Change change, CallbackInfo ci) {
+        Consumer<Change> listener = changeListener;
+        if (listener != null) listener.accept(change);
+    }
+}
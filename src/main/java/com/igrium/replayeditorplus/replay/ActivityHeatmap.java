@@ -0,0 +1,183 @@
+package com.igrium.replayeditorplus.replay;
+
+import java.util.Arrays;
+
+/**
+ * How much happens over the course of a replay, counted per time bucket. The
+ * counts are stored at several resolutions so a timeline at any zoom level can
+ * draw them without summing thousands of buckets per pixel.
+ */
+public final class ActivityHeatmap {
+
+    /**
+     * A kind of activity that's counted.
+     */
+    public static enum Activity {
+        PACKETS,
+        ENTITY_SPAWNS,
+        CHAT,
+        BLOCK_CHANGES
+    }
+
+    /**
+     * The bucket sizes of each level, in milliseconds, from finest to coarsest.
+     */
+    public static final int[] BUCKET_SIZES = {1000, 10000, 60000};
+
+    /**
+     * The activity counts at a single resolution.
+     */
+    public static final class Level {
+        private final int bucketSize;
+        private final int[][] counts;
+        private final int[] maxCounts;
+
+        private Level(int bucketSize, int[][] counts) {
+            this.bucketSize = bucketSize;
+            this.counts = counts;
+            this.maxCounts = new int[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                for (int count : counts[i]) {
+                    maxCounts[i] = Math.max(maxCounts[i], count);
+                }
+            }
+        }
+
+        /**
+         * Get the length of each bucket.
+         * @return Bucket size in milliseconds.
+         */
+        public int getBucketSize() {
+            return bucketSize;
+        }
+
+        /**
+         * Get the number of buckets in this level.
+         */
+        public int size() {
+            return counts[0].length;
+        }
+
+        /**
+         * Get the amount of activity at a point in time.
+         * @param activity The kind of activity.
+         * @param time     The time in milliseconds.
+         * @return The number of events in the bucket containing the time, or
+         *         <code>0</code> if it's outside the replay.
+         */
+        public int getCount(Activity activity, double time) {
+            int[] activityCounts = counts[activity.ordinal()];
+            if (time < 0) return 0;
+            long bucket = (long) (time / bucketSize);
+            return bucket < activityCounts.length ? activityCounts[(int) bucket] : 0;
+        }
+
+        /**
+         * Get the highest amount of activity over a span of time.
+         * @param activity The kind of activity.
+         * @param start    The start of the span in milliseconds.
+         * @param end      The end of the span in milliseconds, exclusive.
+         * @return The highest count of the buckets overlapping the span, or
+         *         <code>0</code> if it's outside the replay.
+         */
+        public int getPeakCount(Activity activity, double start, double end) {
+            int[] activityCounts = counts[activity.ordinal()];
+            long first = (long) Math.max(0, Math.floor(start / bucketSize));
+            long last = Math.min(activityCounts.length - 1, (long) Math.ceil(end / bucketSize) - 1);
+            int peak = 0;
+            for (long bucket = first; bucket <= last; bucket++) {
+                peak = Math.max(peak, activityCounts[(int) bucket]);
+            }
+            return peak;
+        }
+
+        /**
+         * Get the highest count of any bucket in this level.
+         * @param activity The kind of activity.
+         * @return The max count.
+         */
+        public int getMaxCount(Activity activity) {
+            return maxCounts[activity.ordinal()];
+        }
+    }
+
+    private final Level[] levels;
+
+    private ActivityHeatmap(Level[] levels) {
+        this.levels = levels;
+    }
+
+    /**
+     * Get a level by index.
+     * @param index Index into {@link #BUCKET_SIZES}.
+     * @return The level.
+     */
+    public Level getLevel(int index) {
+        return levels[index];
+    }
+
+    /**
+     * Pick the level to draw at a given zoom. This is the finest level whose
+     * buckets are at least as wide as a pixel, so every bucket lands under a
+     * pixel and no burst of activity is skipped over. Past the coarsest level,
+     * use {@link Level#getPeakCount} to cover every bucket under a pixel.
+     *
+     * @param timePerPixel Milliseconds per pixel.
+     * @return The level.
+     */
+    public Level getLevelFor(double timePerPixel) {
+        for (Level level : levels) {
+            if (level.getBucketSize() >= timePerPixel) return level;
+        }
+        return levels[levels.length - 1];
+    }
+
+    /**
+     * Accumulates activity during a single pass over a replay.
+     */
+    static final class Builder {
+        private int[][] counts = new int[Activity.values().length][64];
+        private int numBuckets;
+
+        /**
+         * Count an event.
+         * @param activity The kind of event.
+         * @param time     When it happened, in milliseconds.
+         */
+        public void add(Activity activity, int time) {
+            int bucket = Math.max(0, time / BUCKET_SIZES[0]);
+            if (bucket >= counts[0].length) {
+                int newSize = Math.max(bucket + 1, counts[0].length * 2);
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = Arrays.copyOf(counts[i], newSize);
+                }
+            }
+            counts[activity.ordinal()][bucket]++;
+            numBuckets = Math.max(numBuckets, bucket + 1);
+        }
+
+        public ActivityHeatmap build() {
+            Level[] levels = new Level[BUCKET_SIZES.length];
+            int[][] finest = new int[counts.length][];
+            for (int i = 0; i < counts.length; i++) {
+                finest[i] = Arrays.copyOf(counts[i], numBuckets);
+            }
+            levels[0] = new Level(BUCKET_SIZES[0], finest);
+
+            // Each coarser level is summed from the one before it.
+            for (int l = 1; l < levels.length; l++) {
+                int[][] prev = levels[l - 1].counts;
+                int factor = BUCKET_SIZES[l] / BUCKET_SIZES[l - 1];
+                int[][] level = new int[prev.length][];
+                for (int i = 0; i < prev.length; i++) {
+                    level[i] = new int[(prev[i].length + factor - 1) / factor];
+                    for (int b = 0; b < prev[i].length; b++) {
+                        level[i][b / factor] += prev[i][b];
+                    }
+                }
+                levels[l] = new Level(BUCKET_SIZES[l], level);
+            }
+            return new ActivityHeatmap(levels);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.igrium.replayeditorplus.replay;
+
+import java.util.Arrays;
+
+/**
+ * A compact index of where in a replay's packet data each point in time lives.
+ * Stores one entry per time bucket as parallel primitive arrays of timestamps
+ * and byte offsets into the recording.
+ */
+public final class ReplayIndex {
+    private final int[] times;
+    private final long[] offsets;
+    private final int[] packetTypeCounts;
+    private final int packetCount;
+    private final int duration;
+    private final ActivityHeatmap activity;
+
+    ReplayIndex(int[] times, long[] offsets, int[] packetTypeCounts, int packetCount, int duration,
+            ActivityHeatmap activity) {
+        this.times = times;
+        this.offsets = offsets;
+        this.packetTypeCounts = packetTypeCounts;
+        this.packetCount = packetCount;
+        this.duration = duration;
+        this.activity = activity;
+    }
+
+    /**
+     * Get the number of entries in this index.
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Get the timestamp of an entry.
+     * @param index Entry index.
+     * @return The timestamp of the first packet in the entry, in milliseconds.
+     */
+    public int getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Get the byte offset of an entry.
+     * @param index Entry index.
+     * @return The offset of the first packet in the entry, relative to the start
+     *         of the recording.
+     */
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Find the last entry at or before a given time.
+     * @param time The time in milliseconds.
+     * @return The entry index, or <code>-1</code> if the time is before the
+     *         first entry.
+     */
+    public int indexOf(int time) {
+        int index = Arrays.binarySearch(times, time);
+        if (index >= 0) {
+            // Multiple entries can't share a timestamp, but be safe.
+            while (index > 0 && times[index - 1] == time) index--;
+            return index;
+        }
+        return -index - 2;
+    }
+
+    /**
+     * Find the byte offset to start reading from to reach a given time.
+     * @param time The time in milliseconds.
+     * @return The offset of the last indexed packet at or before the time.
+     */
+    public long getOffsetAt(int time) {
+        int index = indexOf(time);
+        return index >= 0 ? offsets[index] : 0;
+    }
+
+    /**
+     * Get the total number of packets in the replay.
+     */
+    public int getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * Get the number of packets with a given ID.
+     * @param packetId The packet ID.
+     * @return The number of packets.
+     */
+    public int getPacketTypeCount(int packetId) {
+        return packetId >= 0 && packetId < packetTypeCounts.length ? packetTypeCounts[packetId] : 0;
+    }
+
+    /**
+     * Get the number of packets of each ID.
+     * @return A copy of the counts, indexed by packet ID.
+     */
+    public int[] getPacketTypeCounts() {
+        return packetTypeCounts.clone();
+    }
+
+    /**
+     * Get the timestamp of the last packet in the replay.
+     * @return Duration in milliseconds.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get how much happens over the course of the replay.
+     * @return The activity heatmap.
+     */
+    public ActivityHeatmap getActivity() {
+        return activity;
+    }
+}
@@ -0,0 +1,254 @@
+package com.igrium.replayeditorplus.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.igrium.replayeditorplus.replay.ActivityHeatmap.Activity;
+import com.replaymod.replay.ReplayHandler;
+import com.replaymod.replaystudio.lib.viaversion.api.protocol.packet.State;
+import com.replaymod.replaystudio.lib.viaversion.api.protocol.version.ProtocolVersion;
+import com.replaymod.replaystudio.protocol.PacketType;
+import com.replaymod.replaystudio.protocol.PacketTypeRegistry;
+import com.replaymod.replaystudio.replay.ReplayFile;
+
+/**
+ * Builds a {@link ReplayIndex} in the background by streaming through a
+ * replay's packet data once. The {@link ActivityHeatmap} is counted in the same
+ * pass.
+ */
+public class ReplayIndexer {
+
+    /**
+     * The zip entry that holds the recorded packets.
+     */
+    public static final String RECORDING_ENTRY = "recording.tmcpr";
+
+    /**
+     * The minimum time between two index entries, in milliseconds.
+     */
+    public static final int RESOLUTION = 100;
+
+    private static final Activity[] NO_ACTIVITIES = {};
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Replay Indexer %d").setDaemon(true).build());
+
+    private final ReplayFile replayFile;
+    private final int expectedDuration;
+    private final CompletableFuture<ReplayIndex> future = new CompletableFuture<>();
+
+    private volatile boolean cancelled;
+    private volatile double progress;
+
+    private ReplayIndexer(ReplayFile replayFile, int expectedDuration) {
+        this.replayFile = replayFile;
+        this.expectedDuration = expectedDuration;
+    }
+
+    /**
+     * Start indexing a replay in the background.
+     * @param replayHandler The replay to index.
+     * @return The indexer.
+     */
+    public static ReplayIndexer start(ReplayHandler replayHandler) {
+        ReplayIndexer indexer = new ReplayIndexer(replayHandler.getReplayFile(), replayHandler.getReplayDuration());
+        EXECUTOR.execute(indexer::run);
+        return indexer;
+    }
+
+    /**
+     * Get a future that completes with the index once it's built.
+     */
+    public CompletableFuture<ReplayIndex> getFuture() {
+        return future;
+    }
+
+    /**
+     * Get how far through the replay the indexer is.
+     * @return Progress from 0 to 1.
+     */
+    public double getProgress() {
+        return progress;
+    }
+
+    /**
+     * Stop indexing. The future completes exceptionally with a
+     * {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled = true;
+        future.cancel(false);
+    }
+
+    private void run() {
+        if (cancelled) return;
+        try (InputStream in = replayFile.get(RECORDING_ENTRY)
+                .orElseThrow(() -> new IOException("Replay has no " + RECORDING_ENTRY))) {
+            ReplayIndex index = read(new DataInputStream(new BufferedInputStream(in, 1 << 16)));
+            if (index != null) {
+                progress = 1;
+                future.complete(index);
+            }
+        } catch (Exception e) {
+            LogManager.getLogger().error("Error indexing replay", e);
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Read through the packet data and build the index.
+     * @return The index, or <code>null</code> if indexing was cancelled.
+     */
+    private ReplayIndex read(DataInputStream in) throws IOException {
+        int[] times = new int[1024];
+        long[] offsets = new long[1024];
+        int[] packetTypeCounts = new int[256];
+        Activity[][] packetActivities = new Activity[256][];
+        ActivityHeatmap.Builder activity = new ActivityHeatmap.Builder();
+        PacketTypeRegistry registry = packetRegistry(replayFile.getMetaData().getProtocolVersion());
+        int[] idLength = new int[1];
+        int entries = 0;
+        int packetCount = 0;
+        int lastTime = 0;
+        int nextEntryTime = 0;
+        long offset = 0;
+
+        while (!cancelled) {
+            int time;
+            try {
+                time = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+
+            // Recordings from a crashed client can end partway through a packet.
+            int length;
+            int packetId;
+            try {
+                length = in.readInt();
+                packetId = readVarInt(in, idLength);
+                in.skipNBytes(length - idLength[0]);
+            } catch (EOFException e) {
+                LogManager.getLogger().warn("Replay recording is truncated after {} ms; indexing what's there.",
+                        lastTime);
+                break;
+            }
+
+            if (time >= nextEntryTime) {
+                if (entries == times.length) {
+                    times = Arrays.copyOf(times, entries * 2);
+                    offsets = Arrays.copyOf(offsets, entries * 2);
+                }
+                times[entries] = time;
+                offsets[entries] = offset;
+                entries++;
+                nextEntryTime = time + RESOLUTION;
+
+                if (expectedDuration > 0) {
+                    progress = Math.min(1, (double) time / expectedDuration);
+                }
+            }
+
+            if (packetId >= packetTypeCounts.length) {
+                int newSize = Math.max(packetId + 1, packetTypeCounts.length * 2);
+                packetTypeCounts = Arrays.copyOf(packetTypeCounts, newSize);
+                packetActivities = Arrays.copyOf(packetActivities, newSize);
+            }
+            activity.add(Activity.PACKETS, time);
+            if (packetId >= 0) {
+                packetTypeCounts[packetId]++;
+                Activity[] activities = packetActivities[packetId];
+                if (activities == null) {
+                    activities = classify(registry, packetId);
+                    packetActivities[packetId] = activities;
+                }
+                for (Activity a : activities) {
+                    activity.add(a, time);
+                }
+            }
+
+            packetCount++;
+            lastTime = time;
+            offset += 8 + length;
+        }
+
+        if (cancelled) return null;
+        return new ReplayIndex(Arrays.copyOf(times, entries), Arrays.copyOf(offsets, entries),
+                packetTypeCounts, packetCount, lastTime, activity.build());
+    }
+
+    /**
+     * Get the play-state packet registry of the version a replay was recorded
+     * in. Packet IDs change between versions, so the running game's registry
+     * can't be used.
+     * @return The registry, or <code>null</code> if ReplayStudio doesn't know
+     *         the version.
+     */
+    @Nullable
+    private static PacketTypeRegistry packetRegistry(int protocolVersion) {
+        try {
+            return PacketTypeRegistry.get(ProtocolVersion.getProtocol(protocolVersion), State.PLAY);
+        } catch (RuntimeException e) {
+            LogManager.getLogger().warn("Unknown replay protocol version {}; activity won't be classified.",
+                    protocolVersion);
+            return null;
+        }
+    }
+
+    /**
+     * Find which activities a packet ID counts towards, besides
+     * {@link Activity#PACKETS}.
+     */
+    private static Activity[] classify(@Nullable PacketTypeRegistry registry, int packetId) {
+        if (registry == null) return NO_ACTIVITIES;
+        PacketType type = registry.getType(packetId);
+        if (type == null) return NO_ACTIVITIES;
+
+        // Go by name so this holds up across protocol versions.
+        String name = type.name();
+        List<Activity> activities = new ArrayList<>(1);
+        if (name.startsWith("Spawn") && !name.equals("SpawnPosition") && !name.equals("SpawnParticle")) {
+            activities.add(Activity.ENTITY_SPAWNS);
+        }
+        if (name.contains("Chat")) {
+            activities.add(Activity.CHAT);
+        }
+        if (name.endsWith("BlockChange")) {
+            activities.add(Activity.BLOCK_CHANGES);
+        }
+        return activities.toArray(NO_ACTIVITIES);
+    }
+
+    /**
+     * Read a Minecraft-style variable length integer.
+     * @param in     Stream to read from.
+     * @param length Receives the number of bytes read in its first element.
+     * @return The integer.
+     */
+    private static int readVarInt(DataInputStream in, int[] length) throws IOException {
+        int value = 0;
+        int bytes = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (b & 0x7F) << (bytes++ * 7);
+            if (bytes > 5) throw new IOException("VarInt too big");
+        } while ((b & 0x80) != 0);
+        length[0] = bytes;
+        return value;
+    }
+}
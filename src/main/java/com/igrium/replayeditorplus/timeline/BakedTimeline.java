@@ -0,0 +1,604 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replay.ReplayHandler;
+import com.replaymod.replay.ReplaySender;
+import com.replaymod.replay.camera.CameraEntity;
+import com.replaymod.replaystudio.pathing.impl.TimelineImpl;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+
+/**
+ * A read-only view of a prepared timeline that plays back from pre-sampled
+ * values instead of evaluating interpolators every frame.
+ * <p>
+ * Each path is sampled at a fixed interval, plus at every keyframe, into
+ * primitive arrays. During playback, the sample before the current time is
+ * found with a binary search (usually skipped, since playback moves forward)
+ * and its values are linearly interpolated with the next sample's. The camera
+ * and replay time are set straight from the interpolated doubles, doing what
+ * their properties' {@link Property#applyToGame} would without boxing. Other
+ * properties are rebuilt from their parts and applied through the property.
+ * <p>
+ * Each segment between keyframes is baked on its own. When baking, the halfway
+ * point between every pair of samples is checked against the live
+ * interpolation, and a segment that's off by more than the tolerance is baked
+ * again at a finer interval. Each path gets {@link #MAX_PATH_BYTES} of samples:
+ * paths too long to bake at the requested interval are baked at a coarser one,
+ * and segments that can't be refined within the budget, as well as any time or
+ * property without samples, fall back to live evaluation.
+ */
+public class BakedTimeline extends TimelineImpl {
+
+    /**
+     * The default time between samples, in milliseconds.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 10;
+
+    /**
+     * The finest interval a segment is refined to before giving up and
+     * evaluating it live.
+     */
+    public static final int MIN_SAMPLE_INTERVAL = 1;
+
+    /**
+     * The most memory the samples of a single path may take, in bytes. About
+     * 90 minutes of camera path at the default interval.
+     */
+    public static final long MAX_PATH_BYTES = 32 << 20;
+
+    /**
+     * The maximum error of camera positions, in blocks.
+     */
+    public static final double POSITION_TOLERANCE = 1e-3;
+
+    /**
+     * The maximum error of camera rotations, in degrees.
+     */
+    public static final double ROTATION_TOLERANCE = 1e-2;
+
+    /**
+     * The maximum error of any other property part. Integer parts, like replay
+     * timestamps, get truncated, so anything finer than one unit is noise.
+     */
+    public static final double DEFAULT_TOLERANCE = 1;
+
+    private static final int KIND_OTHER = 0;
+    private static final int KIND_POSITION = 1;
+    private static final int KIND_ROTATION = 2;
+    private static final int KIND_TIMESTAMP = 3;
+
+    private static final class BakedProperty {
+        final Property<?> property;
+        final PropertyPart<?>[] parts;
+
+        /**
+         * Which of the properties that are applied without boxing this is.
+         */
+        final int kind;
+
+        /**
+         * Sampled values, indexed by part and then sample.
+         */
+        final double[][] values;
+
+        /**
+         * Whether the property had a value at each sample, and it can be
+         * interpolated from there to the next one.
+         */
+        final boolean[] present;
+
+        BakedProperty(Property<?> property, int numSamples) {
+            this.property = property;
+            this.parts = property.getParts().toArray(new PropertyPart<?>[0]);
+            this.kind = getKind(property);
+            this.values = new double[parts.length][numSamples];
+            this.present = new boolean[numSamples];
+        }
+    }
+
+    private static final class BakedPath {
+        final Path path;
+        final long[] times;
+        final BakedProperty[] properties;
+
+        /**
+         * The number of segments that couldn't be baked accurately within the
+         * budget and are evaluated live.
+         */
+        final int liveSegments;
+
+        /**
+         * Set if none of this path could be baked and all of it is evaluated
+         * live.
+         */
+        final boolean live;
+
+        /**
+         * The sample used last frame. Render thread only.
+         */
+        int lastIndex;
+
+        BakedPath(Path path, long[] times, BakedProperty[] properties, int liveSegments, boolean live) {
+            this.path = path;
+            this.times = times;
+            this.properties = properties;
+            this.liveSegments = liveSegments;
+            this.live = live;
+        }
+    }
+
+    private final Timeline source;
+    private final BakedPath[] paths;
+
+    /**
+     * Scratch space for interpolated part values, so applying doesn't
+     * allocate. Render thread only.
+     */
+    private final double[] scratch;
+
+    private BakedTimeline(Timeline source, BakedPath[] paths) {
+        this.source = source;
+        this.paths = paths;
+
+        int maxParts = 0;
+        for (BakedPath path : paths) {
+            for (BakedProperty property : path.properties) {
+                maxParts = Math.max(maxParts, property.parts.length);
+            }
+        }
+        this.scratch = new double[maxParts];
+    }
+
+    /**
+     * Bake a prepared timeline at the default interval. The timeline's
+     * interpolators must already be baked, and it must not be edited while
+     * baking or while the result is in use.
+     *
+     * @param source The timeline to bake.
+     * @return The baked timeline.
+     */
+    public static BakedTimeline bake(Timeline source) {
+        return bake(source, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Bake a prepared timeline. The timeline's interpolators must already be
+     * baked, and it must not be edited while baking or while the result is in
+     * use.
+     *
+     * @param source         The timeline to bake.
+     * @param sampleInterval The time between samples, in milliseconds. Paths
+     *                       too long to fit in {@link #MAX_PATH_BYTES} at this
+     *                       interval use a coarser one.
+     * @return The baked timeline.
+     */
+    public static BakedTimeline bake(Timeline source, int sampleInterval) {
+        List<BakedPath> paths = new ArrayList<>(source.getPaths().size());
+        for (Path path : source.getPaths()) {
+            paths.add(bakePath(path, sampleInterval));
+        }
+        return new BakedTimeline(source, paths.toArray(new BakedPath[0]));
+    }
+
+    /**
+     * Get the timeline this was baked from.
+     */
+    public Timeline getSource() {
+        return source;
+    }
+
+    /**
+     * Get the number of paths with at least one segment that couldn't be baked
+     * within tolerance and is evaluated live.
+     */
+    public int getLivePathCount() {
+        int count = 0;
+        for (BakedPath path : paths) {
+            if (path.live || path.liveSegments > 0) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the total number of samples across all paths.
+     */
+    public int getSampleCount() {
+        int count = 0;
+        for (BakedPath path : paths) {
+            count += path.times.length;
+        }
+        return count;
+    }
+
+    @Override
+    public List<Path> getPaths() {
+        return source.getPaths();
+    }
+
+    @Override
+    public Property<?> getProperty(String id) {
+        return source.getProperty(id);
+    }
+
+    @Override
+    public void applyToGame(long time, Object replayHandler) {
+        for (BakedPath baked : paths) {
+            if (!baked.path.isActive()) continue;
+            if (baked.live) {
+                for (BakedProperty property : baked.properties) {
+                    applyLive(baked.path, property.property, time, replayHandler);
+                }
+            } else {
+                applyPath(baked, time, replayHandler);
+            }
+        }
+    }
+
+    private void applyPath(BakedPath baked, long time, Object replayHandler) {
+        int index = findSample(baked, time);
+        for (BakedProperty property : baked.properties) {
+            if (interpolate(baked, property, index, time, scratch)) {
+                apply(property, scratch, replayHandler);
+            } else {
+                applyLive(baked.path, property.property, time, replayHandler);
+            }
+        }
+    }
+
+    /**
+     * Apply interpolated part values. The camera and replay time are set
+     * directly, the same way their properties would; anything else is boxed
+     * and applied through its property.
+     */
+    private static void apply(BakedProperty property, double[] values, Object replayHandler) {
+        switch (property.kind) {
+            case KIND_POSITION -> {
+                ReplayHandler handler = (ReplayHandler) replayHandler;
+                handler.spectateCamera();
+                CameraEntity camera = handler.getCameraEntity();
+                if (camera != null) camera.setCameraPosition(values[0], values[1], values[2]);
+            }
+            case KIND_ROTATION -> {
+                ReplayHandler handler = (ReplayHandler) replayHandler;
+                handler.spectateCamera();
+                CameraEntity camera = handler.getCameraEntity();
+                if (camera != null) camera.setCameraRotation((float) values[0], (float) values[1], (float) values[2]);
+            }
+            case KIND_TIMESTAMP -> {
+                ReplaySender sender = ((ReplayHandler) replayHandler).getReplaySender();
+                int timestamp = (int) values[0];
+                if (sender.isAsyncMode()) {
+                    sender.jumpToTime(timestamp);
+                } else {
+                    sender.sendPacketsTill(timestamp);
+                }
+            }
+            default -> applyGeneric(property, values, replayHandler);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void applyGeneric(BakedProperty property, double[] values, Object replayHandler) {
+        ((Property) property.property).applyToGame(toValue(property, values), replayHandler);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object toValue(BakedProperty property, double[] values) {
+        Object value = property.property.getNewValue();
+        for (int p = 0; p < property.parts.length; p++) {
+            value = ((PropertyPart) property.parts[p]).fromDouble(value, values[p]);
+        }
+        return value;
+    }
+
+    /**
+     * Get the value playback would apply for a property of a path. Lets tests
+     * compare baked values with live interpolation.
+     *
+     * @param path     The index of the path.
+     * @param property The property.
+     * @param time     The time in milliseconds.
+     * @return The value, or <code>null</code> if the path has none at that
+     *         time.
+     */
+    @Nullable
+    Object getValue(int path, Property<?> property, long time) {
+        BakedPath baked = paths[path];
+        if (!baked.live) {
+            for (BakedProperty bakedProperty : baked.properties) {
+                if (bakedProperty.property != property) continue;
+                double[] values = new double[bakedProperty.parts.length];
+                if (interpolate(baked, bakedProperty, findSample(baked, time), time, values)) {
+                    return toValue(bakedProperty, values);
+                }
+            }
+        }
+        return getLiveValue(baked.path, property, time);
+    }
+
+    /**
+     * Interpolate a property's part values between the samples around a time.
+     * @param index The sample at or before the time.
+     * @param out   The array to write the part values to.
+     * @return Whether there were samples to interpolate. If not, the property
+     *         must be evaluated live.
+     */
+    private static boolean interpolate(BakedPath baked, BakedProperty property, int index, long time, double[] out) {
+        long[] times = baked.times;
+        if (index < 0 || !property.present[index]) return false;
+
+        int next = index + 1;
+        boolean interpolate = next < times.length && times[next] > times[index];
+        double t = interpolate ? (double) (time - times[index]) / (times[next] - times[index]) : 0;
+        for (int p = 0; p < property.parts.length; p++) {
+            double a = property.values[p][index];
+            // Parts that can't be interpolated hold their value until the next sample.
+            out[p] = interpolate && property.parts[p].isInterpolatable()
+                    ? a + (property.values[p][next] - a) * t
+                    : a;
+        }
+        return true;
+    }
+
+    /**
+     * Find the last sample at or before a time.
+     * @return The sample index, or <code>-1</code> if the time is outside the
+     *         baked range.
+     */
+    private static int findSample(BakedPath baked, long time) {
+        long[] times = baked.times;
+        if (times.length == 0 || time < times[0] || time > times[times.length - 1]) return -1;
+
+        // Playback moves forward, so the answer is usually the same or the next sample.
+        int hint = baked.lastIndex;
+        for (int i = hint; i < times.length && i <= hint + 1; i++) {
+            if (times[i] <= time && (i + 1 >= times.length || times[i + 1] > time)) {
+                baked.lastIndex = i;
+                return i;
+            }
+        }
+
+        int index = Arrays.binarySearch(times, time);
+        if (index < 0) index = -index - 2;
+        baked.lastIndex = index;
+        return index;
+    }
+
+    @Nullable
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object getLiveValue(Path path, Property property, long time) {
+        return path.getValue(property, time).orElse(null);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void applyLive(Path path, Property property, long time, Object replayHandler) {
+        Object value = getLiveValue(path, property, time);
+        if (value != null) property.applyToGame(value, replayHandler);
+    }
+
+    private static Set<Property<?>> getProperties(Path path) {
+        Set<Property<?>> properties = new LinkedHashSet<>();
+        for (Keyframe keyframe : path.getKeyframes()) {
+            properties.addAll(keyframe.getProperties());
+        }
+        return properties;
+    }
+
+    private static int getKind(Property<?> property) {
+        if (property == CameraProperties.POSITION) return KIND_POSITION;
+        if (property == CameraProperties.ROTATION) return KIND_ROTATION;
+        if (property == TimestampProperty.PROPERTY) return KIND_TIMESTAMP;
+        return KIND_OTHER;
+    }
+
+    /**
+     * Get how much memory one sample of a path takes.
+     */
+    private static long getSampleBytes(Collection<Property<?>> properties) {
+        long bytes = Long.BYTES;
+        for (Property<?> property : properties) {
+            bytes += property.getParts().size() * Double.BYTES + 1;
+        }
+        return bytes;
+    }
+
+    private static BakedPath bakePath(Path path, int sampleInterval) {
+        List<Keyframe> keyframes = new ArrayList<>(path.getKeyframes());
+        Set<Property<?>> properties = getProperties(path);
+        Property<?>[] propertyArray = properties.toArray(new Property<?>[0]);
+
+        long maxSamples = MAX_PATH_BYTES / getSampleBytes(properties);
+        if (keyframes.isEmpty() || maxSamples < keyframes.size()) {
+            BakedProperty[] live = new BakedProperty[propertyArray.length];
+            for (int i = 0; i < live.length; i++) {
+                live[i] = new BakedProperty(propertyArray[i], 0);
+            }
+            return new BakedPath(path, new long[0], live, 0, true);
+        }
+
+        // Start at whatever interval fits the whole path in the budget.
+        long start = keyframes.get(0).getTime();
+        long end = keyframes.get(keyframes.size() - 1).getTime();
+        long baseInterval = Math.max(sampleInterval, ceilDiv(end - start, maxSamples - keyframes.size()));
+
+        if (keyframes.size() == 1) {
+            return merge(path, propertyArray, List.of(bakeSegment(path, propertyArray, start, start, 1)), 0);
+        }
+
+        // Every segment gets the base interval; refining one spends what's left.
+        long used = 1;
+        for (int i = 0; i + 1 < keyframes.size(); i++) {
+            used += countSamples(keyframes.get(i).getTime(), keyframes.get(i + 1).getTime(), baseInterval) - 1;
+        }
+
+        // Bake each segment separately, so only the ones that need it are refined.
+        List<BakedPath> segments = new ArrayList<>(keyframes.size() - 1);
+        for (int i = 0; i + 1 < keyframes.size(); i++) {
+            long from = keyframes.get(i).getTime();
+            long to = keyframes.get(i + 1).getTime();
+            long interval = baseInterval;
+            BakedPath segment = bakeSegment(path, propertyArray, from, to, interval);
+
+            while (segment.liveSegments > 0 && interval > MIN_SAMPLE_INTERVAL) {
+                long finer = Math.max(MIN_SAMPLE_INTERVAL, interval / 2);
+                long extra = countSamples(from, to, finer) - segment.times.length;
+                if (used + extra > maxSamples) break;
+                interval = finer;
+                segment = bakeSegment(path, propertyArray, from, to, interval);
+                used += extra;
+            }
+            segments.add(segment);
+        }
+
+        int liveSegments = 0;
+        for (BakedPath segment : segments) {
+            liveSegments += segment.liveSegments;
+        }
+        return merge(path, propertyArray, segments, liveSegments);
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * Get the number of samples a segment is baked into, including both ends.
+     */
+    private static long countSamples(long from, long to, long interval) {
+        return ceilDiv(to - from, interval) + 1;
+    }
+
+    /**
+     * Sample a segment between two keyframes, including both ends.
+     * @return The samples. Its live segment count is one if any property isn't
+     *         accurate, and those properties are marked as not present.
+     */
+    private static BakedPath bakeSegment(Path path, Property<?>[] properties, long from, long to, long interval) {
+        long[] times = new long[(int) countSamples(from, to, interval)];
+        int count = 0;
+        for (long time = from; time < to; time += interval) {
+            times[count++] = time;
+        }
+        // Sample keyframes exactly so corners in the path aren't cut.
+        times[count] = to;
+
+        BakedProperty[] baked = new BakedProperty[properties.length];
+        boolean accurate = true;
+        for (int i = 0; i < properties.length; i++) {
+            BakedProperty property = new BakedProperty(properties[i], times.length);
+            for (int s = 0; s < times.length; s++) {
+                sample(path, property, times[s], property.values, s);
+            }
+            if (!isAccurate(path, times, property)) {
+                Arrays.fill(property.present, false);
+                accurate = false;
+            }
+            baked[i] = property;
+        }
+        return new BakedPath(path, times, baked, accurate ? 0 : 1, false);
+    }
+
+    /**
+     * Join baked segments into one path. Each segment's last sample is the
+     * next one's first.
+     */
+    private static BakedPath merge(Path path, Property<?>[] properties, List<BakedPath> segments, int liveSegments) {
+        int total = 1;
+        for (BakedPath segment : segments) {
+            total += segment.times.length - 1;
+        }
+
+        long[] times = new long[total];
+        BakedProperty[] baked = new BakedProperty[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            baked[i] = new BakedProperty(properties[i], total);
+        }
+
+        int offset = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            BakedPath segment = segments.get(s);
+            // The shared sample is taken from the later segment, which interpolates from it.
+            boolean last = s == segments.size() - 1;
+            int length = last ? segment.times.length : segment.times.length - 1;
+            System.arraycopy(segment.times, 0, times, offset, length);
+            for (int i = 0; i < properties.length; i++) {
+                BakedProperty from = segment.properties[i];
+                BakedProperty to = baked[i];
+                for (int p = 0; p < to.parts.length; p++) {
+                    System.arraycopy(from.values[p], 0, to.values[p], offset, length);
+                }
+                System.arraycopy(from.present, 0, to.present, offset, length);
+            }
+            offset += length;
+        }
+
+        // Don't interpolate into a segment that's evaluated live.
+        for (BakedProperty property : baked) {
+            for (int s = 0; s + 1 < total; s++) {
+                if (!property.present[s + 1]) property.present[s] = false;
+            }
+        }
+        return new BakedPath(path, times, baked, liveSegments, false);
+    }
+
+    /**
+     * Evaluate a property live and store its part values.
+     * @return Whether the property had a value.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static boolean sample(Path path, BakedProperty baked, long time, double[][] values, int index) {
+        Optional<?> value = path.getValue((Property) baked.property, time);
+        if (value.isEmpty()) return false;
+        for (int p = 0; p < baked.parts.length; p++) {
+            values[p][index] = ((PropertyPart) baked.parts[p]).toDouble(value.get());
+        }
+        if (values == baked.values) baked.present[index] = true;
+        return true;
+    }
+
+    /**
+     * Compare the halfway point between every pair of samples to the live
+     * interpolation.
+     */
+    private static boolean isAccurate(Path path, long[] times, BakedProperty property) {
+        double tolerance = getTolerance(property.property);
+        double[][] live = new double[property.parts.length][1];
+
+        for (int s = 0; s + 1 < times.length; s++) {
+            if (!property.present[s] || !property.present[s + 1]) continue;
+            long mid = (times[s] + times[s + 1]) / 2;
+            if (mid == times[s]) continue;
+            if (!sample(path, property, mid, live, 0)) return false;
+
+            double t = (double) (mid - times[s]) / (times[s + 1] - times[s]);
+            for (int p = 0; p < property.parts.length; p++) {
+                if (!property.parts[p].isInterpolatable()) continue;
+                double a = property.values[p][s];
+                double lerped = a + (property.values[p][s + 1] - a) * t;
+                if (Math.abs(lerped - live[p][0]) > tolerance) return false;
+            }
+        }
+        return true;
+    }
+
+    private static double getTolerance(Property<?> property) {
+        if (property == CameraProperties.POSITION) return POSITION_TOLERANCE;
+        if (property == CameraProperties.ROTATION) return ROTATION_TOLERANCE;
+        return DEFAULT_TOLERANCE;
+    }
+}
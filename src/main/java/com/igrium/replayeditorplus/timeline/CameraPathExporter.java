@@ -0,0 +1,236 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+
+/**
+ * Samples a prepared timeline's camera at a fixed rate and writes the result
+ * to a file. Unlike playback, nothing is applied to the game, so this works
+ * without a world, a window or a GPU.
+ * <p>
+ * Samples are streamed through a fixed-size buffer as they're taken, so memory
+ * use doesn't depend on the length of the path.
+ * <p>
+ * The binary format is big-endian: the magic <code>RECP</code>, an int
+ * version, a double sample rate and a long sample count, followed by one
+ * record per sample of a double time in seconds, three doubles for position,
+ * three floats for yaw, pitch and roll, a float FOV and an int replay
+ * timestamp.
+ */
+public class CameraPathExporter {
+
+    /**
+     * The file formats an exporter can write.
+     */
+    public static enum Format {
+        CSV,
+        BINARY
+    }
+
+    public static final int MAGIC = 0x52454350; // RECP
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the output buffer, in bytes.
+     */
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    private final double sampleRate;
+    private final Format format;
+    private float fov = 70;
+
+    /**
+     * Create a camera path exporter.
+     * @param sampleRate The number of samples per second of timeline time.
+     * @param format     The format to write.
+     */
+    public CameraPathExporter(double sampleRate, Format format) {
+        if (!(sampleRate > 0)) throw new IllegalArgumentException("Sample rate must be positive.");
+        this.sampleRate = sampleRate;
+        this.format = format;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * Get the FOV written with each sample. Replay Mod's camera paths don't
+     * animate FOV, so this is constant.
+     * @return FOV in degrees.
+     */
+    public float getFov() {
+        return fov;
+    }
+
+    /**
+     * Set the FOV written with each sample.
+     * @param fov FOV in degrees.
+     */
+    public void setFov(float fov) {
+        this.fov = fov;
+    }
+
+    /**
+     * Export a timeline, from its first keyframe to its last. The timeline's
+     * interpolators must already be baked, and it must not be edited while
+     * exporting.
+     *
+     * @param timeline The timeline to export.
+     * @param out      The stream to write to. Not closed.
+     * @return The number of samples written.
+     * @throws IOException If an IO exception occurs writing the file.
+     */
+    public long export(Timeline timeline, OutputStream out) throws IOException {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (Path path : timeline.getPaths()) {
+            for (Keyframe keyframe : path.getKeyframes()) {
+                start = Math.min(start, keyframe.getTime());
+                end = Math.max(end, keyframe.getTime());
+            }
+        }
+        if (start > end) return 0;
+        return export(timeline, start, end, out);
+    }
+
+    /**
+     * Export part of a timeline. The timeline's interpolators must already be
+     * baked, and it must not be edited while exporting.
+     *
+     * @param timeline The timeline to export.
+     * @param start    The first time to sample, in milliseconds.
+     * @param end      The last time to sample, in milliseconds.
+     * @param out      The stream to write to. Not closed.
+     * @return The number of samples written.
+     * @throws IOException If an IO exception occurs writing the file.
+     */
+    public long export(Timeline timeline, long start, long end, OutputStream out) throws IOException {
+        long count = (long) Math.floor((end - start) * sampleRate / 1000) + 1;
+        BufferedOutputStream buffer = new BufferedOutputStream(out, CHUNK_SIZE);
+
+        SampleWriter writer = format == Format.CSV ? new CsvWriter(buffer) : new BinaryWriter(buffer);
+        writer.writeHeader(count);
+
+        // Hold the last known value where a path doesn't cover the time, like playback does.
+        double[] position = { Double.NaN, Double.NaN, Double.NaN };
+        double[] rotation = { Double.NaN, Double.NaN, Double.NaN };
+        double[] timestamp = { -1 };
+
+        for (long i = 0; i < count; i++) {
+            // Compute each time from the index so rounding doesn't accumulate.
+            long time = start + Math.round(i * 1000 / sampleRate);
+            for (Path path : timeline.getPaths()) {
+                if (!path.isActive()) continue;
+                sample(path, CameraProperties.POSITION, time, position);
+                sample(path, CameraProperties.ROTATION, time, rotation);
+                sample(path, TimestampProperty.PROPERTY, time, timestamp);
+            }
+            writer.writeSample(time / 1000d, position, rotation, fov, (int) timestamp[0]);
+        }
+
+        writer.finish();
+        buffer.flush();
+        return count;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void sample(Path path, Property property, long time, double[] values) {
+        Optional<?> value = path.getValue(property, time);
+        if (value.isEmpty()) return;
+        int i = 0;
+        for (Object part : property.getParts()) {
+            if (i >= values.length) break;
+            values[i++] = ((PropertyPart) part).toDouble(value.get());
+        }
+    }
+
+    private static interface SampleWriter {
+        void writeHeader(long count) throws IOException;
+        void writeSample(double time, double[] position, double[] rotation, float fov, int timestamp) throws IOException;
+        void finish() throws IOException;
+    }
+
+    private class BinaryWriter implements SampleWriter {
+        final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        public void writeHeader(long count) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(sampleRate);
+            out.writeLong(count);
+        }
+
+        @Override
+        public void writeSample(double time, double[] position, double[] rotation, float fov, int timestamp)
+                throws IOException {
+            out.writeDouble(time);
+            out.writeDouble(position[0]);
+            out.writeDouble(position[1]);
+            out.writeDouble(position[2]);
+            out.writeFloat((float) rotation[0]);
+            out.writeFloat((float) rotation[1]);
+            out.writeFloat((float) rotation[2]);
+            out.writeFloat(fov);
+            out.writeInt(timestamp);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static class CsvWriter implements SampleWriter {
+        final Writer out;
+        final StringBuilder line = new StringBuilder(128);
+
+        CsvWriter(OutputStream out) {
+            this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void writeHeader(long count) throws IOException {
+            out.write("time,x,y,z,yaw,pitch,roll,fov,timestamp\n");
+        }
+
+        @Override
+        public void writeSample(double time, double[] position, double[] rotation, float fov, int timestamp)
+                throws IOException {
+            line.setLength(0);
+            line.append(time);
+            for (double d : position) line.append(',').append(d);
+            for (double d : rotation) line.append(',').append((float) d);
+            line.append(',').append(fov).append(',').append(timestamp).append('\n');
+            out.append(line);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+    }
+}
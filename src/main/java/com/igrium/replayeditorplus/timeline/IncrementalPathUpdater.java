@@ -0,0 +1,243 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.replaymod.replaystudio.pathing.interpolation.InterpolationParameters;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+
+/**
+ * Keeps the interpolation of a timeline's paths up to date, only recomputing
+ * what changed since the last update. Replaces calling
+ * {@link Path#updateAll()} on every path.
+ * <p>
+ * The time and values of each keyframe are hashed on every update. A segment
+ * is dirty if one of its keyframes changed, and an interpolator is dirty if
+ * one of its segments is. Each interpolator is baked with the parameters left
+ * over by the one before it, so interpolation is recomputed from the first
+ * dirty interpolator to the end of the path. Interpolators before it, and paths
+ * without changes, are left alone.
+ * <p>
+ * An updater can also be created that only tracks changes without baking,
+ * for timelines whose interpolation isn't needed.
+ */
+public class IncrementalPathUpdater {
+
+    /**
+     * Describes what changed in a path during an update.
+     */
+    public static final class PathChanges {
+        private final List<Keyframe> keyframes;
+        private final int[] changedIndices;
+        private final boolean structural;
+
+        PathChanges(List<Keyframe> keyframes, int[] changedIndices, boolean structural) {
+            this.keyframes = keyframes;
+            this.changedIndices = changedIndices;
+            this.structural = structural;
+        }
+
+        /**
+         * Get the path's keyframes in order, as of this update.
+         * @return An unmodifiable list of keyframes.
+         */
+        public List<Keyframe> getKeyframes() {
+            return keyframes;
+        }
+
+        /**
+         * Get the indices of keyframes that were added or whose time or values
+         * changed.
+         * @return Changed keyframe indices, in ascending order.
+         */
+        public int[] getChangedIndices() {
+            return changedIndices;
+        }
+
+        /**
+         * Whether keyframes were added, removed or reordered, or segments were
+         * assigned different interpolators.
+         */
+        public boolean isStructural() {
+            return structural;
+        }
+
+        /**
+         * Whether nothing changed.
+         */
+        public boolean isEmpty() {
+            return !structural && changedIndices.length == 0;
+        }
+    }
+
+    private static class PathState {
+        List<Keyframe> keyframes = Collections.emptyList();
+        Map<Keyframe, Long> keyframeHashes = new IdentityHashMap<>();
+        List<Interpolator> interpolators = new ArrayList<>();
+
+        /**
+         * The parameters returned by each interpolator's last bake.
+         */
+        List<Map<PropertyPart, InterpolationParameters>> bakeResults = new ArrayList<>();
+    }
+
+    private final Map<Path, PathState> states = new IdentityHashMap<>();
+    private final boolean bake;
+
+    /**
+     * Create an updater that bakes interpolation.
+     */
+    public IncrementalPathUpdater() {
+        this(true);
+    }
+
+    /**
+     * Create an updater.
+     * @param bake Whether to bake interpolation. If <code>false</code>, the
+     *             updater only reports what changed.
+     */
+    public IncrementalPathUpdater(boolean bake) {
+        this.bake = bake;
+    }
+
+    /**
+     * Whether this updater bakes interpolation.
+     */
+    public boolean isBaking() {
+        return bake;
+    }
+
+    /**
+     * Update all the paths in a timeline.
+     * @param timeline The timeline.
+     * @return What changed in each path.
+     */
+    public Map<Path, PathChanges> update(Timeline timeline) {
+        Map<Path, PathChanges> changes = new IdentityHashMap<>();
+        for (Path path : timeline.getPaths()) {
+            changes.put(path, update(path));
+        }
+        return changes;
+    }
+
+    /**
+     * Update the interpolation of a path.
+     * @param path The path.
+     * @return What changed since the last update.
+     */
+    public PathChanges update(Path path) {
+        PathState state = states.get(path);
+        boolean fresh = state == null;
+        if (fresh) {
+            state = new PathState();
+            states.put(path, state);
+        }
+
+        List<Keyframe> keyframes = new ArrayList<>(path.getKeyframes());
+        Map<Keyframe, Long> hashes = new IdentityHashMap<>(keyframes.size());
+        boolean structural = fresh || keyframes.size() != state.keyframes.size();
+
+        // The first keyframe whose segments need to be re-baked.
+        int firstDirtyKeyframe = keyframes.size();
+        if (keyframes.size() != state.keyframes.size()) {
+            firstDirtyKeyframe = Math.max(0, Math.min(keyframes.size(), state.keyframes.size()) - 1);
+        }
+
+        int[] changed = new int[keyframes.size()];
+        int numChanged = 0;
+        for (int i = 0; i < keyframes.size(); i++) {
+            Keyframe keyframe = keyframes.get(i);
+            long hash = TimelineFingerprint.mix(keyframe.getTime(), TimelineFingerprint.valuesHash(keyframe));
+            hashes.put(keyframe, hash);
+
+            if (i >= state.keyframes.size() || state.keyframes.get(i) != keyframe) {
+                structural = true;
+                firstDirtyKeyframe = Math.min(firstDirtyKeyframe, i);
+            }
+
+            Long prevHash = state.keyframeHashes.get(keyframe);
+            if (prevHash == null || prevHash != hash) {
+                changed[numChanged++] = i;
+                firstDirtyKeyframe = Math.min(firstDirtyKeyframe, i);
+            }
+        }
+
+        // Group segments into runs that share an interpolator.
+        List<Interpolator> interpolators = new ArrayList<>();
+        List<Integer> lastKeyframes = new ArrayList<>();
+        int segmentIndex = 0;
+        for (PathSegment segment : path.getSegments()) {
+            Interpolator interpolator = segment.getInterpolator();
+            if (interpolators.isEmpty() || interpolators.get(interpolators.size() - 1) != interpolator) {
+                interpolators.add(interpolator);
+                lastKeyframes.add(segmentIndex + 1);
+            } else {
+                lastKeyframes.set(lastKeyframes.size() - 1, segmentIndex + 1);
+            }
+            segmentIndex++;
+        }
+
+        int firstDirty = fresh && bake ? 0 : interpolators.size();
+        for (int r = 0; r < firstDirty; r++) {
+            Interpolator interpolator = interpolators.get(r);
+            if (r >= state.interpolators.size() || state.interpolators.get(r) != interpolator) {
+                structural = true;
+                firstDirty = r;
+            } else if (bake && ((interpolator != null && interpolator.isDirty()) || lastKeyframes.get(r) >= firstDirtyKeyframe)) {
+                firstDirty = r;
+            }
+        }
+        if (interpolators.size() != state.interpolators.size()) structural = true;
+
+        List<Map<PropertyPart, InterpolationParameters>> bakeResults = new ArrayList<>(interpolators.size());
+        if (bake) {
+            for (int r = 0; r < firstDirty; r++) {
+                bakeResults.add(state.bakeResults.get(r));
+            }
+
+            Map<PropertyPart, InterpolationParameters> parameters = firstDirty > 0
+                    ? state.bakeResults.get(firstDirty - 1)
+                    : Collections.emptyMap();
+            for (int r = firstDirty; r < interpolators.size(); r++) {
+                Interpolator interpolator = interpolators.get(r);
+                if (interpolator != null) {
+                    parameters = new HashMap<>(interpolator.bake(new HashMap<>(parameters)));
+                }
+                bakeResults.add(parameters);
+            }
+        }
+
+        state.keyframes = Collections.unmodifiableList(keyframes);
+        state.keyframeHashes = hashes;
+        state.interpolators = interpolators;
+        state.bakeResults = bakeResults;
+
+        int[] changedIndices = new int[numChanged];
+        System.arraycopy(changed, 0, changedIndices, 0, numChanged);
+        return new PathChanges(state.keyframes, changedIndices, structural);
+    }
+
+    /**
+     * Forget the state of a path, so it gets fully updated next time.
+     * @param path The path.
+     */
+    public void reset(Path path) {
+        states.remove(path);
+    }
+
+    /**
+     * Forget the state of all paths, so they get fully updated next time.
+     */
+    public void reset() {
+        states.clear();
+    }
+}
@@ -0,0 +1,323 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.stream.JsonReader;
+import com.replaymod.replaystudio.pathing.PathingRegistry;
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.CubicSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+
+/**
+ * A timeline file in the {@link TimelineBinaryFormat}, mapped into memory or
+ * read onto the heap. Opening the file only reads its directory; each path is
+ * decoded when it's used, and its time and value columns can be read in place
+ * without decoding anything.
+ * <p>
+ * A mapping is released when this object is garbage collected. Instances are
+ * immutable and may be shared between threads.
+ */
+public class MappedTimelineFile {
+
+    private static record PropertyInfo(String id, int parts) {
+    }
+
+    private final ByteBuffer buffer;
+    private final List<PropertyInfo> properties = new ArrayList<>();
+    private final Map<String, long[]> timelines = new LinkedHashMap<>();
+
+    MappedTimelineFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            readDirectory();
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt timeline file.", e);
+        }
+    }
+
+    private void readDirectory() throws IOException {
+        if (buffer.capacity() < 20 || buffer.getInt(0) != TimelineBinaryFormat.MAGIC
+                || buffer.getInt(buffer.capacity() - 4) != TimelineBinaryFormat.MAGIC) {
+            throw new IOException("Not a timeline file.");
+        }
+        int version = buffer.getInt(4);
+        if (version != TimelineBinaryFormat.VERSION) {
+            throw new IOException("Unsupported timeline file version: " + version);
+        }
+
+        ByteBuffer in = buffer.duplicate();
+        in.position(checkedOffset(buffer.getLong(buffer.capacity() - 12)));
+
+        int propertyCount = in.getInt();
+        for (int i = 0; i < propertyCount; i++) {
+            properties.add(new PropertyInfo(readString(in), in.getInt()));
+        }
+
+        int timelineCount = in.getInt();
+        for (int i = 0; i < timelineCount; i++) {
+            String name = readString(in);
+            long[] offsets = new long[in.getInt()];
+            for (int p = 0; p < offsets.length; p++) {
+                offsets[p] = checkedOffset(in.getLong());
+            }
+            timelines.put(name, offsets);
+        }
+    }
+
+    /**
+     * Get the names of the timelines in this file, in the order they were
+     * written.
+     */
+    public Set<String> getTimelineNames() {
+        return Collections.unmodifiableSet(timelines.keySet());
+    }
+
+    /**
+     * Get the number of paths in a timeline.
+     * @param name The timeline's name.
+     * @return The number of paths.
+     * @throws IllegalArgumentException If there's no timeline with that name.
+     */
+    public int getPathCount(String name) throws IllegalArgumentException {
+        return offsets(name).length;
+    }
+
+    /**
+     * Get the number of keyframes in a path.
+     * @param name The timeline's name.
+     * @param path The index of the path.
+     * @return The number of keyframes.
+     */
+    public int getKeyframeCount(String name, int path) {
+        return buffer.getInt(pathOffset(name, path) + 1);
+    }
+
+    /**
+     * Get the keyframe times of a path, without copying them.
+     * @param name The timeline's name.
+     * @param path The index of the path.
+     * @return A read-only view of the times, in milliseconds.
+     */
+    public LongBuffer getTimes(String name, int path) {
+        int offset = pathOffset(name, path);
+        int n = buffer.getInt(offset + 1);
+        return buffer.slice(offset + 5, n * 8).asLongBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Get the values of one property part in a path, without copying them.
+     * Keyframes that don't have the property hold <code>0</code>; check
+     * {@link Keyframe#getValue} on the decoded path if that matters.
+     *
+     * @param name     The timeline's name.
+     * @param path     The index of the path.
+     * @param property The ID of the property.
+     * @param part     The index of the part within the property.
+     * @return A read-only view of the values, one per keyframe, or
+     *         <code>null</code> if the path has no such column.
+     */
+    @Nullable
+    public DoubleBuffer getColumn(String name, int path, String property, int part) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(pathOffset(name, path) + 1);
+        int n = in.getInt();
+        in.position(in.position() + n * 8);
+
+        int words = (n + 63) / 64;
+        int columns = in.getInt();
+        for (int c = 0; c < columns; c++) {
+            PropertyInfo info = properties.get(in.getInt());
+            in.position(in.position() + words * 8);
+            if (info.parts() < 0) {
+                skipJsonColumn(in, n, words);
+                continue;
+            }
+            if (info.id().equals(property)) {
+                if (part < 0 || part >= info.parts()) return null;
+                return in.slice(in.position() + part * n * 8, n * 8).asDoubleBuffer().asReadOnlyBuffer();
+            }
+            in.position(in.position() + info.parts() * n * 8);
+        }
+        return null;
+    }
+
+    /**
+     * Decode a whole timeline.
+     * @param name     The timeline's name.
+     * @param registry The registry to create the timeline with.
+     * @return The decoded timeline. Its interpolations are not baked; call
+     *         {@link Path#updateAll()} before playing it.
+     * @throws IOException If the timeline uses a property the registry doesn't
+     *                     know, or the file is corrupt.
+     */
+    public Timeline decode(String name, PathingRegistry registry) throws IOException {
+        Timeline timeline = registry.createTimeline();
+        int pathCount = getPathCount(name);
+        for (int i = 0; i < pathCount; i++) {
+            decodePath(name, i, timeline);
+        }
+        return timeline;
+    }
+
+    /**
+     * Decode a single path, appending it to a timeline.
+     * @param name     The timeline's name.
+     * @param path     The index of the path.
+     * @param timeline The timeline to create the path in. Its properties are
+     *                 used to resolve property IDs.
+     * @return The decoded path.
+     * @throws IOException If the path uses a property the timeline doesn't
+     *                     know, or the file is corrupt.
+     */
+    public Path decodePath(String name, int path, Timeline timeline) throws IOException {
+        ByteBuffer in = buffer.duplicate();
+        in.position(pathOffset(name, path));
+        try {
+            return readPath(in, timeline);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt timeline file.", e);
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Path readPath(ByteBuffer in, Timeline timeline) throws IOException {
+        Path path = timeline.createPath();
+        path.setActive(in.get() != 0);
+
+        int n = in.getInt();
+        Keyframe[] keyframes = new Keyframe[n];
+        for (int i = 0; i < n; i++) {
+            keyframes[i] = path.insert(in.getLong());
+        }
+
+        int words = (n + 63) / 64;
+        long[] present = new long[words];
+        int columns = in.getInt();
+        for (int c = 0; c < columns; c++) {
+            PropertyInfo info = properties.get(in.getInt());
+            Property property = resolve(timeline, info.id());
+            for (int w = 0; w < words; w++) {
+                present[w] = in.getLong();
+            }
+
+            if (info.parts() < 0) {
+                for (int i = 0; i < n; i++) {
+                    if ((present[i >> 6] & 1L << i) == 0) continue;
+                    keyframes[i].setValue(property, property.fromJson(new JsonReader(new StringReader(readString(in)))));
+                }
+                continue;
+            }
+
+            List<PropertyPart> parts = List.copyOf(property.getParts());
+            if (parts.size() != info.parts()) {
+                throw new IOException("Property " + info.id() + " has " + parts.size() + " parts; file has "
+                        + info.parts());
+            }
+
+            // Read the columns row by row, straight out of the mapping.
+            int base = in.position();
+            for (int i = 0; i < n; i++) {
+                if ((present[i >> 6] & 1L << i) == 0) continue;
+                Object value = property.getNewValue();
+                for (int p = 0; p < parts.size(); p++) {
+                    value = parts.get(p).fromDouble(value, in.getDouble(base + (p * n + i) * 8));
+                }
+                keyframes[i].setValue(property, value);
+            }
+            in.position(base + parts.size() * n * 8);
+        }
+
+        Interpolator[] interpolators = new Interpolator[in.getInt()];
+        for (int i = 0; i < interpolators.length; i++) {
+            interpolators[i] = readInterpolator(in, timeline);
+        }
+
+        Iterator<PathSegment> segments = path.getSegments().iterator();
+        for (int i = 0; i < n - 1; i++) {
+            int index = in.getInt();
+            PathSegment segment = segments.next();
+            if (index >= 0) segment.setInterpolator(interpolators[index]);
+        }
+
+        return path;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Interpolator readInterpolator(ByteBuffer in, Timeline timeline) throws IOException {
+        byte type = in.get();
+        Interpolator interpolator = switch (type) {
+            case TimelineBinaryFormat.LINEAR -> new LinearInterpolator();
+            case TimelineBinaryFormat.CUBIC -> new CubicSplineInterpolator();
+            case TimelineBinaryFormat.CATMULL_ROM -> new CatmullRomSplineInterpolator(in.getDouble());
+            default -> throw new IOException("Unknown interpolator type: " + type);
+        };
+
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            interpolator.registerProperty(resolve(timeline, properties.get(in.getInt()).id()));
+        }
+        return interpolator;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Property resolve(Timeline timeline, String id) throws IOException {
+        Property property = timeline.getProperty(id);
+        if (property == null) throw new IOException("Unknown property: " + id);
+        return property;
+    }
+
+    private void skipJsonColumn(ByteBuffer in, int n, int words) {
+        int start = in.position() - words * 8;
+        for (int i = 0; i < n; i++) {
+            if ((in.getLong(start + (i >> 6) * 8) & 1L << i) == 0) continue;
+            in.position(in.position() + in.getInt());
+        }
+    }
+
+    private long[] offsets(String name) throws IllegalArgumentException {
+        long[] offsets = timelines.get(name);
+        if (offsets == null) {
+            throw new IllegalArgumentException("No timeline named '" + name + "'");
+        }
+        return offsets;
+    }
+
+    private int pathOffset(String name, int path) {
+        return (int) offsets(name)[path];
+    }
+
+    private int checkedOffset(long offset) throws IOException {
+        if (offset < 8 || offset >= buffer.capacity()) {
+            throw new IOException("Invalid offset in timeline file: " + offset);
+        }
+        return (int) offset;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
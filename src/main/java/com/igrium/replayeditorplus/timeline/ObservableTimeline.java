@@ -0,0 +1,22 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.replaymod.replaystudio.pathing.change.Change;
+import com.replaymod.replaystudio.pathing.impl.TimelineImpl;
+
+/**
+ * A timeline that reports each change pushed onto its undo stack.
+ * {@link TimelineImpl} implements this through a mixin.
+ */
+public interface ObservableTimeline {
+
+    /**
+     * Set the listener to call with each change just before it's pushed onto
+     * the undo stack, which also clears the redo stack.
+     * @param listener The listener, or <code>null</code> to remove it.
+     */
+    void setChangeListener(@Nullable Consumer<Change> listener);
+}
@@ -0,0 +1,327 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.apache.logging.log4j.LogManager;
+import org.jetbrains.annotations.Nullable;
+
+import com.igrium.replayeditorplus.timeline.IncrementalPathUpdater.PathChanges;
+import com.igrium.replayeditorplus.util.IllegalTimelineException;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+import com.replaymod.simplepathing.SPTimeline;
+
+import net.minecraft.text.Text;
+
+/**
+ * Prepares timelines for playback: validates them, copies them so edits don't
+ * affect playback, and interpolates the copy.
+ * <p>
+ * All of this is done incrementally. If the timeline hasn't changed since the
+ * last preparation, the previous result is returned as-is. If only keyframe
+ * values changed, the new values are patched into the previous copy, and only
+ * the affected interpolation is recomputed on both the source timeline and the
+ * copy.
+ * <p>
+ * Preparation can also run asynchronously. Detecting changes, validating and
+ * copying are cheap and happen on the calling thread, since they read the
+ * source timeline. Interpolating the copy, which is the expensive part, only
+ * touches the copy and happens on an executor. The source timeline's own
+ * interpolation is left alone; only the copy is ever played.
+ * <p>
+ * If baked playback is enabled, the interpolated copy is also sampled into a
+ * {@link BakedTimeline} so playback doesn't evaluate interpolators every frame.
+ */
+public class PlaybackPreparer {
+
+    @Nullable
+    private SPTimeline source;
+
+    private final IncrementalPathUpdater sourceUpdater = new IncrementalPathUpdater(false);
+    private final TimestampOrderCheck timestampCheck = new TimestampOrderCheck();
+
+    @Nullable
+    private Timeline copy;
+    private final Map<Keyframe, Keyframe> copiedKeyframes = new IdentityHashMap<>();
+    private IncrementalPathUpdater copyUpdater = new IncrementalPathUpdater();
+
+    @Nullable
+    private PreparedTimeline prepared;
+
+    /**
+     * The interpolation of the current copy, if it was started.
+     */
+    @Nullable
+    private CompletableFuture<Timeline> baking;
+
+    /**
+     * The current preparation's result, if it's still in flight. Callers get
+     * copies, so cancelling one doesn't cancel it for everyone.
+     */
+    @Nullable
+    private CompletableFuture<Timeline> pending;
+    private boolean pendingIgnoreTimeKeyframes;
+    private long pendingFingerprint;
+
+    // The number of times the source was copied from scratch, for tests.
+    private int copyCount;
+
+    private boolean bakePlayback = true;
+
+    /**
+     * Whether prepared timelines are sampled into a {@link BakedTimeline}.
+     */
+    public synchronized boolean isBakePlayback() {
+        return bakePlayback;
+    }
+
+    /**
+     * Set whether prepared timelines are sampled into a {@link BakedTimeline}.
+     * @param bakePlayback Whether to bake playback.
+     */
+    public synchronized void setBakePlayback(boolean bakePlayback) {
+        if (this.bakePlayback == bakePlayback) return;
+        this.bakePlayback = bakePlayback;
+        prepared = null;
+    }
+
+    /**
+     * Prepare a timeline for playback.
+     *
+     * @param spTimeline          The timeline to prepare.
+     * @param ignoreTimeKeyframes Don't check whether there's enough time
+     *                            keyframes.
+     * @return A timeline with the playable paths.
+     * @throws IllegalTimelineException If an error in the timeline makes it
+     *                                  unable to play.
+     */
+    public Timeline prepare(SPTimeline spTimeline, boolean ignoreTimeKeyframes)
+            throws IllegalTimelineException {
+        try {
+            return prepareAsync(spTimeline, ignoreTimeKeyframes, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IllegalTimelineException ex) throw ex;
+            if (e.getCause() instanceof RuntimeException ex) throw ex;
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a preparation is still interpolating.
+     */
+    public synchronized boolean isPreparing() {
+        return pending != null && !pending.isDone();
+    }
+
+    synchronized int getCopyCount() {
+        return copyCount;
+    }
+
+    /**
+     * Prepare a timeline for playback, interpolating it on an executor. Must
+     * be called on the thread that edits the timeline.
+     * <p>
+     * If a previous preparation of the same, unedited timeline is still
+     * interpolating, this waits for it instead of starting over. Otherwise
+     * its result is discarded. Cancelling the returned future only stops the result from
+     * being delivered; interpolation that already started runs to completion
+     * in the background on its own copy.
+     *
+     * @param spTimeline          The timeline to prepare.
+     * @param ignoreTimeKeyframes Don't check whether there's enough time
+     *                            keyframes.
+     * @param executor            The executor to interpolate on.
+     * @return A future that completes with the playable timeline, or
+     *         exceptionally with an {@link IllegalTimelineException} if an
+     *         error in the timeline makes it unable to play.
+     */
+    public synchronized CompletableFuture<Timeline> prepareAsync(SPTimeline spTimeline, boolean ignoreTimeKeyframes,
+            Executor executor) {
+        long fingerprint = TimelineFingerprint.of(spTimeline.getTimeline());
+
+        // Nothing changed since the last preparation; reuse it.
+        if (prepared != null && prepared.matches(spTimeline, ignoreTimeKeyframes, fingerprint)) {
+            try {
+                return CompletableFuture.completedFuture(prepared.getTimeline());
+            } catch (IllegalTimelineException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        // The same preparation is already on its way.
+        if (pending != null && !pending.isDone() && spTimeline == source
+                && pendingIgnoreTimeKeyframes == ignoreTimeKeyframes && pendingFingerprint == fingerprint) {
+            return pending.copy();
+        }
+        pending = null;
+
+        // The old copy may still be interpolating, so it can't be patched.
+        if (baking != null && !baking.isDone()) {
+            copy = null;
+        }
+        baking = null;
+
+        if (spTimeline != source) {
+            reset();
+            source = spTimeline;
+        }
+
+        Map<Path, PathChanges> changes = sourceUpdater.update(spTimeline.getTimeline());
+
+        try {
+            validate(spTimeline, changes.get(spTimeline.getTimePath()), ignoreTimeKeyframes);
+        } catch (IllegalTimelineException e) {
+            // These changes won't be patched into the copy, so it has to be made again.
+            copy = null;
+            prepared = PreparedTimeline.failure(spTimeline, ignoreTimeKeyframes, fingerprint, e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (copy == null || !patchCopy(changes)) {
+            copy = cloneTimeline(spTimeline);
+            copyCount++;
+            mapKeyframes(spTimeline.getTimeline(), copy);
+            // An older updater may still be in use by a cancelled preparation.
+            copyUpdater = new IncrementalPathUpdater();
+        }
+
+        Timeline target = copy;
+        IncrementalPathUpdater updater = copyUpdater;
+        boolean bake = bakePlayback;
+        CompletableFuture<Timeline> future = CompletableFuture.supplyAsync(() -> {
+            // Skip the work if this copy was already replaced while waiting.
+            synchronized (this) {
+                if (copy != target) throw new CancellationException("Timeline was prepared again.");
+            }
+            updater.update(target);
+            return bake ? BakedTimeline.bake(target) : target;
+        }, executor);
+
+        baking = future;
+        pending = future.thenApply(timeline -> {
+            synchronized (this) {
+                if (copy != target) throw new CancellationException("Timeline was prepared again.");
+                prepared = PreparedTimeline.success(spTimeline, ignoreTimeKeyframes, fingerprint, timeline);
+                return timeline;
+            }
+        });
+        pendingIgnoreTimeKeyframes = ignoreTimeKeyframes;
+        pendingFingerprint = fingerprint;
+        return pending.copy();
+    }
+
+    /**
+     * Discard all cached state, forcing the next preparation to start from
+     * scratch.
+     */
+    public synchronized void reset() {
+        source = null;
+        sourceUpdater.reset();
+        timestampCheck.reset();
+        copy = null;
+        copiedKeyframes.clear();
+        copyUpdater = new IncrementalPathUpdater();
+        prepared = null;
+        baking = null;
+        pending = null;
+    }
+
+    private void validate(SPTimeline timeline, PathChanges timeChanges, boolean ignoreTimeKeyframes)
+            throws IllegalTimelineException {
+        // The source updater has already consumed these changes, so the check
+        // must see them before anything can throw, even if it's ignored this time.
+        boolean timestampsInOrder = timestampCheck.update(timeChanges);
+
+        if (timeline.getPositionPath().getSegments().isEmpty()) {
+            throw new IllegalTimelineException(timeline.getTimeline(), Text.translatable("replaymod.chat.morekeyframes"));
+        }
+
+        if (ignoreTimeKeyframes) return;
+
+        if (!timestampsInOrder) {
+            throw new IllegalTimelineException(timeline.getTimeline(),
+                    Text.empty().append(Text.translatable("replaymod.chat.morekeyframes")
+                            .append(" ").append("replaymod.error.negativetime2")
+                            .append(" ").append("replaymod.error.negativetime3")));
+        }
+
+        if (timeline.getTimePath().getSegments().isEmpty()) {
+            throw new IllegalTimelineException(timeline.getTimeline(), Text.translatable("replaymod.chat.morekeyframes"));
+        }
+    }
+
+    /**
+     * Copy changed keyframe values into the existing copy.
+     * @return <code>false</code> if the structure of the timeline changed and
+     *         it needs to be copied again.
+     */
+    @SuppressWarnings("rawtypes")
+    private boolean patchCopy(Map<Path, PathChanges> changes) {
+        for (PathChanges pathChanges : changes.values()) {
+            if (pathChanges.isStructural()) return false;
+        }
+
+        for (PathChanges pathChanges : changes.values()) {
+            List<Keyframe> keyframes = pathChanges.getKeyframes();
+            for (int i : pathChanges.getChangedIndices()) {
+                Keyframe keyframe = keyframes.get(i);
+                Keyframe target = copiedKeyframes.get(keyframe);
+                if (target == null || target.getTime() != keyframe.getTime()) return false;
+
+                for (Property property : List.copyOf(target.getProperties())) {
+                    if (!keyframe.getProperties().contains(property)) {
+                        target.removeProperty(property);
+                    }
+                }
+                TimelineCloner.copyValues(copy, keyframe, target);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Match each keyframe in the source timeline to its copy.
+     */
+    private void mapKeyframes(Timeline source, Timeline copy) {
+        copiedKeyframes.clear();
+        Iterator<Path> copyPaths = copy.getPaths().iterator();
+        for (Path path : source.getPaths()) {
+            Iterator<Keyframe> copyKeyframes = copyPaths.next().getKeyframes().iterator();
+            for (Keyframe keyframe : path.getKeyframes()) {
+                copiedKeyframes.put(keyframe, copyKeyframes.next());
+            }
+        }
+    }
+
+    /**
+     * Create an unbaked copy of a timeline. Uses a direct copy when possible and
+     * falls back to a serialization round trip if the timeline contains an
+     * interpolator the direct copy doesn't know.
+     */
+    private static Timeline cloneTimeline(SPTimeline spTimeline) {
+        try {
+            return TimelineCloner.clone(spTimeline, spTimeline.getTimeline());
+        } catch (UnsupportedOperationException e) {
+            LogManager.getLogger().debug("Falling back to serialization to clone timeline: " + e.getMessage());
+        }
+
+        try {
+            TimelineSerialization serialization = new TimelineSerialization(spTimeline, null);
+            String serialized = serialization.serialize(Collections.singletonMap("", spTimeline.getTimeline()));
+            return serialization.deserialize(serialized).get("");
+        } catch (Exception e) {
+            throw new RuntimeException("Error cloning timeline.", e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.igrium.replayeditorplus.timeline;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.igrium.replayeditorplus.util.IllegalTimelineException;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * The result of preparing a timeline for playback, along with what it was
+ * prepared from. Lets the preparation be reused until the source timeline is
+ * edited.
+ */
+public final class PreparedTimeline {
+    private final SPTimeline source;
+    private final boolean ignoreTimeKeyframes;
+    private final long fingerprint;
+
+    @Nullable
+    private final Timeline timeline;
+
+    @Nullable
+    private final IllegalTimelineException error;
+
+    private PreparedTimeline(SPTimeline source, boolean ignoreTimeKeyframes, long fingerprint,
+            Timeline timeline, IllegalTimelineException error) {
+        this.source = source;
+        this.ignoreTimeKeyframes = ignoreTimeKeyframes;
+        this.fingerprint = fingerprint;
+        this.timeline = timeline;
+        this.error = error;
+    }
+
+    /**
+     * Create a successful preparation.
+     * @param source              The timeline that was prepared.
+     * @param ignoreTimeKeyframes Whether time keyframes were validated.
+     * @param fingerprint         The source timeline's fingerprint at the time
+     *                            of preparation.
+     * @param timeline            The prepared timeline.
+     */
+    public static PreparedTimeline success(SPTimeline source, boolean ignoreTimeKeyframes, long fingerprint,
+            Timeline timeline) {
+        return new PreparedTimeline(source, ignoreTimeKeyframes, fingerprint, timeline, null);
+    }
+
+    /**
+     * Create a preparation that failed validation.
+     * @param source              The timeline that was prepared.
+     * @param ignoreTimeKeyframes Whether time keyframes were validated.
+     * @param fingerprint         The source timeline's fingerprint at the time
+     *                            of preparation.
+     * @param error               The validation error.
+     */
+    public static PreparedTimeline failure(SPTimeline source, boolean ignoreTimeKeyframes, long fingerprint,
+            IllegalTimelineException error) {
+        return new PreparedTimeline(source, ignoreTimeKeyframes, fingerprint, null, error);
+    }
+
+    /**
+     * Check whether this preparation is still valid for a timeline.
+     * @param source              The timeline to prepare.
+     * @param ignoreTimeKeyframes Whether time keyframes should be validated.
+     * @param fingerprint         The timeline's current fingerprint.
+     * @return If this preparation can be reused.
+     */
+    public boolean matches(SPTimeline source, boolean ignoreTimeKeyframes, long fingerprint) {
+        return this.source == source && this.ignoreTimeKeyframes == ignoreTimeKeyframes
+                && this.fingerprint == fingerprint;
+    }
+
+    public SPTimeline getSource() {
+        return source;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Get the prepared timeline.
+     * @return The prepared timeline.
+     * @throws IllegalTimelineException If the source timeline failed validation.
+     */
+    public Timeline getTimeline() throws IllegalTimelineException {
+        if (error != null) throw error;
+        return timeline;
+    }
+}
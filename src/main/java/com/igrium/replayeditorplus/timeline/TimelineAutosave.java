@@ -0,0 +1,780 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.igrium.replayeditorplus.RenderTaskScheduler;
+import com.igrium.replayeditorplus.RenderTaskScheduler.Priority;
+import com.igrium.replayeditorplus.mixins.TimelineImplAccessor;
+import com.igrium.replayeditorplus.replay.ReplayIndexer;
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.CubicSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.replay.ReplayFile;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Continuously saves the current timeline to a directory as a snapshot plus
+ * a journal of the edits made since.
+ * <p>
+ * About once a second, the render thread diffs the timeline against what was
+ * last journaled and encodes only the keyframes and segments that changed.
+ * On a background thread, the encoded edits are appended to the journal and
+ * applied to a baseline copy of the timeline. Once the journal grows past a
+ * threshold, it's compacted: the baseline is written as a new snapshot in the
+ * {@link TimelineBinaryFormat}, and the journal is truncated. The render
+ * thread never copies the whole timeline, except once when starting without a
+ * usable autosave.
+ * <p>
+ * When started, the last snapshot is loaded and the journal replayed on top of
+ * it. If the editor didn't close cleanly and the result differs from the
+ * current timeline, the edits were never written to the replay, so the
+ * current timeline is replaced with it. Closing the autosave or saving the
+ * timeline marks the autosave as clean until the next edit.
+ * <p>
+ * Except for the futures' completion, all methods must be called on the
+ * render thread.
+ */
+public class TimelineAutosave {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Timeline Autosave %d").setDaemon(true).build());
+
+    /**
+     * The minimum time between two scans of the timeline, in nanoseconds.
+     */
+    private static final long SCAN_INTERVAL = 1_000_000_000;
+
+    /**
+     * The journal size after which it's compacted into a new snapshot, in
+     * bytes.
+     */
+    public static final long COMPACT_THRESHOLD = 1 << 20;
+
+    public static final String SNAPSHOT_FILE = "autosave.retl";
+    public static final String JOURNAL_FILE = "autosave.journal";
+    public static final String SAVED_FILE = "saved.retl";
+
+    /**
+     * Exists while the replay has every edit in the autosave, so there's
+     * nothing to recover.
+     */
+    public static final String CLEAN_FILE = "clean";
+
+    /**
+     * How much of a replay's recording is hashed to tell replays apart, in
+     * bytes.
+     */
+    public static final int KEY_BYTES = 1 << 20;
+
+    private static final byte OP_PUT = 0;
+    private static final byte OP_REMOVE = 1;
+    private static final byte OP_SEGMENTS = 2;
+
+    private static record Autosaved(Timeline timeline, long contents, boolean clean) {
+    }
+
+    private final java.nio.file.Path directory;
+    private final Supplier<SPTimeline> spTimeline;
+    private final RenderTaskScheduler scheduler;
+
+    // Render thread
+    private boolean ready;
+    private boolean closed;
+    private boolean compacting;
+    private long lastFingerprint;
+    private long lastScan;
+    private final List<Map<Long, Long>> lastHashes = new ArrayList<>();
+    private final List<byte[]> lastSegments = new ArrayList<>();
+
+    // Journal size as of the last write submitted, less compacted records.
+    private long journalSize;
+
+    // Autosave thread
+    @Nullable
+    private Timeline baseline;
+    private boolean markedClean;
+
+    /**
+     * Create a timeline autosave.
+     * @param directory  The directory to save to. Should be unique to the
+     *                   replay.
+     * @param spTimeline Supplies the timeline to save.
+     * @param scheduler  Runs tasks on the render thread.
+     */
+    public TimelineAutosave(java.nio.file.Path directory, Supplier<SPTimeline> spTimeline,
+            RenderTaskScheduler scheduler) {
+        this.directory = directory;
+        this.spTimeline = spTimeline;
+        this.scheduler = scheduler;
+    }
+
+    public java.nio.file.Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Find the autosave directory of a replay. Directories are keyed by a hash
+     * of the start of the replay's recording, so edits are never recovered
+     * into another replay, even one with the same name or recording date.
+     * @param root       The directory holding every replay's autosave.
+     * @param replayFile The replay.
+     * @return A future that completes with the directory once the recording
+     *         is hashed.
+     */
+    public static CompletableFuture<java.nio.file.Path> directoryFor(java.nio.file.Path root, ReplayFile replayFile) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (InputStream in = replayFile.get(ReplayIndexer.RECORDING_ENTRY)
+                    .orElseThrow(() -> new IOException("Replay has no " + ReplayIndexer.RECORDING_ENTRY))) {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(in.readNBytes(KEY_BYTES));
+                return root.resolve(HexFormat.of().formatHex(digest, 0, 16));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Recover the timeline from the autosave if it was left unsaved, then
+     * start saving it.
+     * @return A future that completes once autosaving has started, with
+     *         whether the timeline was recovered.
+     */
+    public CompletableFuture<Boolean> start() {
+        SPTimeline source = spTimeline.get();
+        if (source == null || closed) return CompletableFuture.completedFuture(false);
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return load(source);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Unable to load timeline autosave.", e);
+                return null;
+            }
+        }, EXECUTOR).thenAccept(autosaved -> scheduler.submit(Priority.NORMAL, () -> {
+            SPTimeline current = spTimeline.get();
+            if (closed || current == null) {
+                future.complete(false);
+                return;
+            }
+
+            boolean recovered = false;
+            Timeline baseline;
+            long contents = TimelineFingerprint.ofContents(current.getTimeline());
+            if (autosaved != null && current == source && (autosaved.contents() == contents || !autosaved.clean())) {
+                if (autosaved.contents() != contents) {
+                    LOGGER.info("Recovering unsaved timeline edits from " + directory);
+                    replaceContents(current.getTimeline(), autosaved.timeline());
+                    recovered = true;
+                }
+                baseline = autosaved.timeline();
+            } else {
+                try {
+                    baseline = TimelineCloner.clone(current, current.getTimeline());
+                } catch (UnsupportedOperationException e) {
+                    LOGGER.warn("Unable to snapshot timeline: " + e.getMessage());
+                    future.complete(false);
+                    return;
+                }
+            }
+
+            boolean result = recovered;
+            rebase(baseline, TimelineFingerprint.of(current.getTimeline()))
+                    .whenComplete((v, e) -> future.complete(result));
+        }));
+        return future;
+    }
+
+    /**
+     * Close the autosave, writing any edits since the last scan and marking it
+     * as clean. Call once the replay has the timeline, such as when it's
+     * closed. The autosave does nothing afterwards.
+     * @return A future that completes once the autosave is written.
+     */
+    public CompletableFuture<Void> close() {
+        if (closed) return CompletableFuture.completedFuture(null);
+        closed = true;
+
+        boolean flush = ready;
+        ready = false;
+        SPTimeline source = spTimeline.get();
+        if (flush && source != null) scan(source.getTimeline());
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (flush) writeSnapshot();
+                markClean();
+            } catch (IOException e) {
+                LOGGER.error("Unable to close timeline autosave.", e);
+                throw new CompletionException(e);
+            } finally {
+                baseline = null;
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Called on the render thread every frame.
+     */
+    public void onFrame() {
+        if (!ready) return;
+        long now = System.nanoTime();
+        if (now - lastScan < SCAN_INTERVAL) return;
+        lastScan = now;
+
+        // A timeline that replaced the last one is diffed against the same
+        // baseline, so only what differs between them is journaled.
+        SPTimeline source = spTimeline.get();
+        if (source == null) return;
+        scan(source.getTimeline());
+    }
+
+    /**
+     * Diff a timeline against the baseline, and journal the edits in the
+     * background.
+     */
+    private void scan(Timeline timeline) {
+        long fingerprint = TimelineFingerprint.of(timeline);
+        if (fingerprint == lastFingerprint) return;
+        lastFingerprint = fingerprint;
+
+        byte[] edits;
+        try {
+            edits = diff(timeline);
+        } catch (IOException e) {
+            LOGGER.error("Unable to encode timeline edits.", e);
+            return;
+        }
+        if (edits == null) return;
+
+        journalSize += edits.length;
+        EXECUTOR.execute(() -> {
+            try {
+                replay(baseline, new DataInputStream(new ByteArrayInputStream(edits, 12, edits.length - 12)));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Unable to apply timeline edits to autosave baseline.", e);
+            }
+            try {
+                appendJournal(edits);
+            } catch (IOException e) {
+                // The baseline has the edits, so a snapshot keeps them.
+                LOGGER.error("Unable to write timeline journal; writing a snapshot instead.", e);
+                try {
+                    writeSnapshot();
+                } catch (IOException e1) {
+                    LOGGER.error("Unable to write timeline snapshot.", e1);
+                }
+            }
+        });
+
+        if (!compacting && journalSize > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Write the baseline as a new snapshot in the background, once the edits
+     * already submitted are journaled. The journal is only truncated once the
+     * snapshot is in place, so nothing is lost if it fails.
+     */
+    private CompletableFuture<Void> compact() {
+        long compacted = journalSize;
+        compacting = true;
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                LOGGER.error("Unable to write timeline snapshot.", e);
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+
+        future.whenComplete((v, e) -> scheduler.submit(Priority.NORMAL, () -> {
+            compacting = false;
+            if (e == null) journalSize -= compacted;
+        }));
+        return future;
+    }
+
+    /**
+     * Journal any edits to the timeline now, without waiting for the next
+     * scan.
+     * @return A future that completes once the edits are written.
+     */
+    public CompletableFuture<Void> flush() {
+        SPTimeline source = spTimeline.get();
+        if (ready && source != null) scan(source.getTimeline());
+        return CompletableFuture.runAsync(() -> {}, EXECUTOR);
+    }
+
+    /**
+     * Write a full snapshot of the timeline now, and keep it as the version
+     * {@link #revert} returns to. Marks the autosave as clean until the next
+     * edit.
+     * @return A future that completes once the snapshot is written.
+     */
+    public CompletableFuture<Void> save() {
+        if (!ready) return CompletableFuture.failedFuture(new IllegalStateException("Autosave hasn't started."));
+        SPTimeline source = spTimeline.get();
+        if (source != null) scan(source.getTimeline());
+
+        return compact().thenRunAsync(() -> {
+            try {
+                Files.copy(directory.resolve(SNAPSHOT_FILE), directory.resolve(SAVED_FILE),
+                        StandardCopyOption.REPLACE_EXISTING);
+                markClean();
+            } catch (IOException e) {
+                LOGGER.error("Unable to save timeline.", e);
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Replace the timeline with the last version written by {@link #save}.
+     * Clears the timeline's undo history.
+     * @return A future that completes once the timeline is reverted, with
+     *         whether there was a saved version.
+     */
+    public CompletableFuture<Boolean> revert() {
+        SPTimeline source = spTimeline.get();
+        if (source == null) return CompletableFuture.completedFuture(false);
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            java.nio.file.Path file = directory.resolve(SAVED_FILE);
+            if (!Files.isRegularFile(file)) return null;
+            try {
+                return TimelineBinaryFormat.read(file).decode("", source);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR).whenComplete((saved, e) -> scheduler.submit(Priority.HIGH, () -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else if (saved == null || source != spTimeline.get()) {
+                future.complete(false);
+            } else {
+                replaceContents(source.getTimeline(), saved);
+                if (source.getTimeline() instanceof TimelineImplAccessor accessor) {
+                    accessor.getUndoStack().clear();
+                    accessor.getRedoStack().clear();
+                }
+                future.complete(true);
+            }
+        }));
+        return future;
+    }
+
+    /**
+     * Start diffing against a new baseline: write it as the snapshot, and work
+     * out its keyframe hashes and segments in the background before scanning
+     * again.
+     * @param baseline    A timeline the autosave thread can own.
+     * @param fingerprint The fingerprint of the current timeline, which must
+     *                    have the same contents as the baseline.
+     */
+    private CompletableFuture<Void> rebase(Timeline baseline, long fingerprint) {
+        ready = false;
+        journalSize = 0;
+
+        return CompletableFuture.supplyAsync(() -> {
+            this.baseline = baseline;
+            try {
+                writeSnapshot();
+                List<Map<Long, Long>> hashes = new ArrayList<>();
+                List<byte[]> segments = new ArrayList<>();
+                for (Path path : baseline.getPaths()) {
+                    hashes.add(hashKeyframes(path));
+                    segments.add(encodeSegments(path));
+                }
+                return Pair.of(hashes, segments);
+            } catch (IOException e) {
+                LOGGER.error("Unable to write timeline snapshot.", e);
+                throw new CompletionException(e);
+            }
+        }, EXECUTOR).thenAccept(state -> scheduler.submit(Priority.NORMAL, () -> {
+            if (closed) return;
+            lastHashes.clear();
+            lastHashes.addAll(state.getLeft());
+            lastSegments.clear();
+            lastSegments.addAll(state.getRight());
+            lastFingerprint = fingerprint;
+            ready = true;
+        }));
+    }
+
+    /**
+     * Write the baseline as the snapshot and truncate the journal. Autosave
+     * thread only.
+     */
+    private void writeSnapshot() throws IOException {
+        if (baseline == null) return;
+        unmarkClean();
+        Files.createDirectories(directory);
+        java.nio.file.Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        TimelineBinaryFormat.write(Collections.singletonMap("", baseline), temp);
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(directory.resolve(JOURNAL_FILE));
+    }
+
+    private void markClean() throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(CLEAN_FILE), new byte[0]);
+        markedClean = true;
+    }
+
+    private void unmarkClean() throws IOException {
+        if (!markedClean) return;
+        Files.deleteIfExists(directory.resolve(CLEAN_FILE));
+        markedClean = false;
+    }
+
+    /**
+     * Encode the edits made to a timeline since the last scan.
+     * @return The encoded edits, or <code>null</code> if nothing changed.
+     */
+    private byte[] diff(Timeline timeline) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        int index = 0;
+        for (Path path : timeline.getPaths()) {
+            if (index >= lastHashes.size()) {
+                lastHashes.add(new HashMap<>());
+                lastSegments.add(new byte[0]);
+            }
+            Map<Long, Long> prevHashes = lastHashes.get(index);
+            Map<Long, Long> hashes = hashKeyframes(path);
+
+            for (Long time : prevHashes.keySet()) {
+                if (hashes.containsKey(time)) continue;
+                out.writeByte(OP_REMOVE);
+                out.writeInt(index);
+                out.writeLong(time);
+            }
+
+            for (Keyframe keyframe : path.getKeyframes()) {
+                Long prev = prevHashes.get(keyframe.getTime());
+                if (prev != null && prev.equals(hashes.get(keyframe.getTime()))) continue;
+                out.writeByte(OP_PUT);
+                out.writeInt(index);
+                out.writeLong(keyframe.getTime());
+                writeValues(out, keyframe);
+            }
+
+            byte[] segments = encodeSegments(path);
+            if (!Arrays.equals(segments, lastSegments.get(index))) {
+                out.writeByte(OP_SEGMENTS);
+                out.writeInt(index);
+                out.write(segments);
+            }
+
+            lastHashes.set(index, hashes);
+            lastSegments.set(index, segments);
+            index++;
+        }
+
+        if (bytes.size() == 0) return null;
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer record = ByteBuffer.allocate(12 + payload.length);
+        record.putInt(payload.length);
+        record.putLong(crc.getValue());
+        record.put(payload);
+        return record.array();
+    }
+
+    private void appendJournal(byte[] record) throws IOException {
+        unmarkClean();
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(JOURNAL_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Load the snapshot and replay the journal on top of it.
+     * @param registry The registry to create the timeline with.
+     * @return The autosaved timeline, or <code>null</code> if there is none.
+     */
+    @Nullable
+    private Autosaved load(SPTimeline registry) throws IOException {
+        markedClean = Files.exists(directory.resolve(CLEAN_FILE));
+        java.nio.file.Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.isRegularFile(snapshot)) return null;
+        Timeline timeline = TimelineBinaryFormat.read(snapshot).decode("", registry);
+
+        java.nio.file.Path journal = directory.resolve(JOURNAL_FILE);
+        if (Files.isRegularFile(journal)) {
+            replayJournal(timeline, journal);
+        }
+        return new Autosaved(timeline, TimelineFingerprint.ofContents(timeline), markedClean);
+    }
+
+    private static void replayJournal(Timeline timeline, java.nio.file.Path journal) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(journal))) {
+            while (true) {
+                byte[] payload;
+                long checksum;
+                try {
+                    payload = new byte[in.readInt()];
+                    checksum = in.readLong();
+                    in.readFully(payload);
+                } catch (EOFException | NegativeArraySizeException | OutOfMemoryError e) {
+                    // A record cut off by a crash; everything before it is intact.
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    LOGGER.warn("Timeline journal has a corrupt record; ignoring the rest.");
+                    break;
+                }
+                replay(timeline, new DataInputStream(new ByteArrayInputStream(payload)));
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void replay(Timeline timeline, DataInputStream in) throws IOException {
+        while (in.available() > 0) {
+            byte op = in.readByte();
+            int index = in.readInt();
+            // A timeline that replaced the baseline's may have more paths.
+            while (timeline.getPaths().size() <= index) {
+                timeline.createPath();
+            }
+            Path path = timeline.getPaths().get(index);
+            switch (op) {
+                case OP_REMOVE -> {
+                    Keyframe keyframe = path.getKeyframe(in.readLong());
+                    if (keyframe != null) path.remove(keyframe, true);
+                }
+                case OP_PUT -> {
+                    long time = in.readLong();
+                    Keyframe keyframe = path.getKeyframe(time);
+                    if (keyframe == null) keyframe = path.insert(time);
+                    for (Property property : List.copyOf(keyframe.getProperties())) {
+                        keyframe.removeProperty(property);
+                    }
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        Property property = resolve(timeline, readString(in));
+                        String json = readString(in);
+                        keyframe.setValue(property, property.fromJson(new JsonReader(new StringReader(json))));
+                    }
+                }
+                case OP_SEGMENTS -> readSegments(in, timeline, path);
+                default -> throw new IOException("Unknown journal op: " + op);
+            }
+        }
+    }
+
+    /**
+     * Replace the keyframes and interpolators of every path in a timeline
+     * with those of another, without recording any undo history.
+     * @param target The timeline to modify.
+     * @param source The timeline to copy from.
+     */
+    @SuppressWarnings("rawtypes")
+    public static void replaceContents(Timeline target, Timeline source) {
+        Iterator<Path> sourcePaths = source.getPaths().iterator();
+        for (Path path : target.getPaths()) {
+            for (Keyframe keyframe : List.copyOf(path.getKeyframes())) {
+                path.remove(keyframe, true);
+            }
+            if (!sourcePaths.hasNext()) continue;
+            Path sourcePath = sourcePaths.next();
+
+            for (Keyframe keyframe : sourcePath.getKeyframes()) {
+                TimelineCloner.copyValues(target, keyframe, path.insert(keyframe.getTime()));
+            }
+
+            Map<Interpolator, Interpolator> interpolators = new IdentityHashMap<>();
+            Iterator<PathSegment> segments = path.getSegments().iterator();
+            for (PathSegment segment : sourcePath.getSegments()) {
+                PathSegment copy = segments.next();
+                Interpolator interpolator = segment.getInterpolator();
+                if (interpolator == null) continue;
+                copy.setInterpolator(interpolators.computeIfAbsent(interpolator,
+                        i -> TimelineCloner.cloneInterpolator(target, i)));
+            }
+            path.updateAll();
+        }
+    }
+
+    private static Map<Long, Long> hashKeyframes(Path path) {
+        Map<Long, Long> hashes = new HashMap<>(Math.max(16, path.getKeyframes().size() * 2));
+        for (Keyframe keyframe : path.getKeyframes()) {
+            hashes.put(keyframe.getTime(), TimelineFingerprint.valuesHash(keyframe));
+        }
+        return hashes;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void writeValues(DataOutputStream out, Keyframe keyframe) throws IOException {
+        List<Property> properties = List.copyOf(keyframe.getProperties());
+        out.writeInt(properties.size());
+        for (Property property : properties) {
+            StringWriter json = new StringWriter();
+            property.toJson(new JsonWriter(json), keyframe.getValue(property).get());
+            writeString(out, property.getId());
+            writeString(out, json.toString());
+        }
+    }
+
+    /**
+     * Encode which interpolator each segment of a path uses. Segments that
+     * share an interpolator refer to the same entry.
+     */
+    @SuppressWarnings("rawtypes")
+    private static byte[] encodeSegments(Path path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        Map<Interpolator, Integer> table = new IdentityHashMap<>();
+        List<Interpolator> order = new ArrayList<>();
+        for (PathSegment segment : path.getSegments()) {
+            Interpolator interpolator = segment.getInterpolator();
+            if (interpolator != null && table.putIfAbsent(interpolator, table.size()) == null) {
+                order.add(interpolator);
+            }
+        }
+
+        out.writeInt(order.size());
+        for (Interpolator interpolator : order) {
+            if (interpolator instanceof CatmullRomSplineInterpolator catmullRom) {
+                out.writeByte(TimelineBinaryFormat.CATMULL_ROM);
+                out.writeDouble(catmullRom.getAlpha());
+            } else if (interpolator instanceof CubicSplineInterpolator) {
+                out.writeByte(TimelineBinaryFormat.CUBIC);
+            } else if (interpolator instanceof LinearInterpolator) {
+                out.writeByte(TimelineBinaryFormat.LINEAR);
+            } else {
+                out.writeByte(-1);
+            }
+
+            List<Property> properties = List.copyOf(interpolator.getKeyframeProperties());
+            out.writeInt(properties.size());
+            for (Property property : properties) {
+                writeString(out, property.getId());
+            }
+        }
+
+        out.writeInt(path.getSegments().size());
+        for (PathSegment segment : path.getSegments()) {
+            Interpolator interpolator = segment.getInterpolator();
+            out.writeInt(interpolator != null ? table.get(interpolator) : -1);
+        }
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void readSegments(DataInputStream in, Timeline timeline, Path path) throws IOException {
+        Interpolator[] table = new Interpolator[in.readInt()];
+        for (int i = 0; i < table.length; i++) {
+            byte type = in.readByte();
+            Interpolator interpolator = switch (type) {
+                case TimelineBinaryFormat.LINEAR -> new LinearInterpolator();
+                case TimelineBinaryFormat.CUBIC -> new CubicSplineInterpolator();
+                case TimelineBinaryFormat.CATMULL_ROM -> new CatmullRomSplineInterpolator(in.readDouble());
+                default -> null;
+            };
+            int count = in.readInt();
+            for (int p = 0; p < count; p++) {
+                Property property = resolve(timeline, readString(in));
+                if (interpolator != null) interpolator.registerProperty(property);
+            }
+            table[i] = interpolator;
+        }
+
+        int count = in.readInt();
+        List<PathSegment> segments = List.copyOf(path.getSegments());
+        for (int i = 0; i < count; i++) {
+            int index = in.readInt();
+            // The journal is written after keyframe ops, so the segments line up.
+            if (i < segments.size() && index >= 0 && table[index] != null) {
+                segments.get(i).setInterpolator(table[index]);
+            }
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Property resolve(Timeline timeline, String id) throws IOException {
+        Property property = timeline.getProperty(id);
+        if (property == null) throw new IOException("Unknown property: " + id);
+        return property;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
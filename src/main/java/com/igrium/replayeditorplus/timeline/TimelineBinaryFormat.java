@@ -0,0 +1,328 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.stream.JsonWriter;
+import com.replaymod.replaystudio.pathing.PathingRegistry;
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.CubicSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+
+/**
+ * A compact binary alternative to {@link TimelineSerialization}'s JSON, for
+ * timelines with too many keyframes to parse quickly.
+ * <p>
+ * Keyframes are stored per path as columns: one array of times, and for each
+ * property a presence bitmask plus one array of doubles per property part.
+ * Properties without parts fall back to their JSON representation. Files are
+ * read with {@link MappedTimelineFile}, which maps them into memory and only
+ * decodes the timelines and columns that are asked for.
+ * <p>
+ * All values are big-endian. A file is laid out as:
+ * <pre>
+ * int magic, int version
+ * path sections...
+ * directory:
+ *   int propertyCount, { string id, int partCount (-1 for JSON) }
+ *   int timelineCount, { string name, int pathCount, { long pathOffset } }
+ * long directoryOffset, int magic
+ * </pre>
+ * A path section is:
+ * <pre>
+ * byte active, int keyframeCount (n)
+ * long[n] times
+ * int columnCount, {
+ *   int property, long[(n + 63) / 64] present,
+ *   double[partCount][n] values | { string json } for each present keyframe
+ * }
+ * int interpolatorCount, { byte type, [double alpha], int propertyCount, int[] properties }
+ * int[n - 1] segment interpolators (-1 for none)
+ * </pre>
+ * Strings are an int byte length followed by UTF-8.
+ */
+public final class TimelineBinaryFormat {
+    private TimelineBinaryFormat() {}
+
+    public static final int MAGIC = 0x5245544C; // RETL
+    public static final int VERSION = 1;
+
+    static final byte LINEAR = 0;
+    static final byte CUBIC = 1;
+    static final byte CATMULL_ROM = 2;
+
+    /**
+     * Write timelines to a binary file.
+     * @param timelines The timelines to write, by name.
+     * @param file      The file to write to. Overwritten if it exists.
+     * @throws IOException If an IO exception occurs writing the file, or a
+     *                     timeline uses an interpolator the format doesn't know.
+     */
+    public static void write(Map<String, Timeline> timelines, java.nio.file.Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(timelines, out);
+        }
+    }
+
+    /**
+     * Write timelines in the binary format.
+     * @param timelines The timelines to write, by name.
+     * @param out       The stream to write to. Not closed.
+     * @throws IOException If an IO exception occurs writing the stream, or a
+     *                     timeline uses an interpolator the format doesn't know.
+     */
+    public static void write(Map<String, Timeline> timelines, OutputStream out) throws IOException {
+        new Writer(out).write(timelines);
+    }
+
+    /**
+     * Open a binary timeline file by mapping it into memory.
+     * @param file The file to open.
+     * @return The mapped file.
+     * @throws IOException If an IO exception occurs opening the file or it
+     *                     isn't a valid timeline file.
+     */
+    public static MappedTimelineFile open(java.nio.file.Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            return new MappedTimelineFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Read a binary timeline file onto the heap. Unlike {@link #open}, the
+     * file isn't left mapped, so it can be replaced right away, which Windows
+     * doesn't allow while a mapping is alive. Meant for small files that are
+     * rewritten often.
+     * @param file The file to read.
+     * @return The file's contents.
+     * @throws IOException If an IO exception occurs reading the file or it
+     *                     isn't a valid timeline file.
+     */
+    public static MappedTimelineFile read(java.nio.file.Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Timeline file is too large.");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) throw new IOException("Truncated or corrupt timeline file.");
+            }
+            buffer.flip();
+            return new MappedTimelineFile(buffer);
+        }
+    }
+
+    /**
+     * Convert timelines from {@link TimelineSerialization}'s JSON to a binary
+     * file.
+     * @param registry The registry to parse the JSON with.
+     * @param json     The serialized timelines.
+     * @param file     The file to write to.
+     * @throws IOException If the JSON can't be parsed or the file can't be
+     *                     written.
+     */
+    public static void convertFromJson(PathingRegistry registry, String json, java.nio.file.Path file)
+            throws IOException {
+        write(new TimelineSerialization(registry, null).deserialize(json), file);
+    }
+
+    /**
+     * Convert a binary timeline file to {@link TimelineSerialization}'s JSON.
+     * @param registry The registry to create the timelines with.
+     * @param file     The file to read.
+     * @return The serialized timelines.
+     * @throws IOException If the file can't be read.
+     */
+    public static String convertToJson(PathingRegistry registry, java.nio.file.Path file) throws IOException {
+        MappedTimelineFile mapped = open(file);
+        Map<String, Timeline> timelines = new LinkedHashMap<>();
+        for (String name : mapped.getTimelineNames()) {
+            timelines.put(name, mapped.decode(name, registry));
+        }
+        return new TimelineSerialization(registry, null).serialize(timelines);
+    }
+
+    private static class Writer {
+        final DataOutputStream out;
+        final Map<String, Integer> propertyIndices = new LinkedHashMap<>();
+        final List<Integer> propertyParts = new ArrayList<>();
+
+        Writer(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        }
+
+        void write(Map<String, Timeline> timelines) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            Map<String, long[]> pathOffsets = new LinkedHashMap<>();
+            for (Map.Entry<String, Timeline> entry : timelines.entrySet()) {
+                List<Path> paths = List.copyOf(entry.getValue().getPaths());
+                long[] offsets = new long[paths.size()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = offset();
+                    writePath(paths.get(i));
+                }
+                pathOffsets.put(entry.getKey(), offsets);
+            }
+
+            long directoryOffset = offset();
+            out.writeInt(propertyIndices.size());
+            int i = 0;
+            for (String id : propertyIndices.keySet()) {
+                writeString(id);
+                out.writeInt(propertyParts.get(i++));
+            }
+
+            out.writeInt(pathOffsets.size());
+            for (Map.Entry<String, long[]> entry : pathOffsets.entrySet()) {
+                writeString(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (long offset : entry.getValue()) {
+                    out.writeLong(offset);
+                }
+            }
+
+            out.writeLong(directoryOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        void writePath(Path path) throws IOException {
+            List<Keyframe> keyframes = List.copyOf(path.getKeyframes());
+            int n = keyframes.size();
+
+            out.writeBoolean(path.isActive());
+            out.writeInt(n);
+            for (Keyframe keyframe : keyframes) {
+                out.writeLong(keyframe.getTime());
+            }
+
+            Set<Property> properties = new LinkedHashSet<>();
+            for (Keyframe keyframe : keyframes) {
+                properties.addAll(keyframe.getProperties());
+            }
+
+            out.writeInt(properties.size());
+            for (Property property : properties) {
+                int parts = property.getParts().size();
+                out.writeInt(propertyIndex(property));
+
+                long[] present = new long[(n + 63) / 64];
+                for (int i = 0; i < n; i++) {
+                    if (keyframes.get(i).getValue(property).isPresent()) present[i >> 6] |= 1L << i;
+                }
+                for (long word : present) {
+                    out.writeLong(word);
+                }
+
+                if (parts > 0) {
+                    for (Object part : property.getParts()) {
+                        for (Keyframe keyframe : keyframes) {
+                            Object value = keyframe.getValue(property).orElse(null);
+                            out.writeDouble(value != null ? ((PropertyPart) part).toDouble(value) : 0);
+                        }
+                    }
+                } else {
+                    for (Keyframe keyframe : keyframes) {
+                        Object value = keyframe.getValue(property).orElse(null);
+                        if (value == null) continue;
+                        StringWriter json = new StringWriter();
+                        property.toJson(new JsonWriter(json), value);
+                        writeString(json.toString());
+                    }
+                }
+            }
+
+            List<PathSegment> segments = List.copyOf(path.getSegments());
+            // IdentityHashMap doesn't keep insertion order, so the table order is kept separately.
+            Map<Interpolator, Integer> interpolators = new IdentityHashMap<>();
+            List<Interpolator> order = new ArrayList<>();
+            for (PathSegment segment : segments) {
+                Interpolator interpolator = segment.getInterpolator();
+                if (interpolator != null && interpolators.putIfAbsent(interpolator, interpolators.size()) == null) {
+                    order.add(interpolator);
+                }
+            }
+
+            out.writeInt(order.size());
+            for (Interpolator interpolator : order) {
+                writeInterpolator(interpolator);
+            }
+
+            for (PathSegment segment : segments) {
+                Interpolator interpolator = segment.getInterpolator();
+                out.writeInt(interpolator != null ? interpolators.get(interpolator) : -1);
+            }
+        }
+
+        @SuppressWarnings("rawtypes")
+        void writeInterpolator(Interpolator interpolator) throws IOException {
+            if (interpolator instanceof CatmullRomSplineInterpolator catmullRom) {
+                out.writeByte(CATMULL_ROM);
+                out.writeDouble(catmullRom.getAlpha());
+            } else if (interpolator instanceof CubicSplineInterpolator) {
+                out.writeByte(CUBIC);
+            } else if (interpolator instanceof LinearInterpolator) {
+                out.writeByte(LINEAR);
+            } else {
+                throw new IOException("Unknown interpolator type: " + interpolator.getClass().getName());
+            }
+
+            Set<Property> properties = interpolator.getKeyframeProperties();
+            out.writeInt(properties.size());
+            for (Property property : properties) {
+                out.writeInt(propertyIndex(property));
+            }
+        }
+
+        @SuppressWarnings("rawtypes")
+        int propertyIndex(Property property) {
+            Integer index = propertyIndices.get(property.getId());
+            if (index == null) {
+                index = propertyIndices.size();
+                propertyIndices.put(property.getId(), index);
+                propertyParts.add(property.getParts().isEmpty() ? -1 : property.getParts().size());
+            }
+            return index;
+        }
+
+        void writeString(String str) throws IOException {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        long offset() throws IOException {
+            // DataOutputStream saturates its count at Integer.MAX_VALUE, which
+            // is also the most a single mapping can address.
+            int size = out.size();
+            if (size == Integer.MAX_VALUE) throw new IOException("Timeline file is too large.");
+            return size;
+        }
+    }
+}
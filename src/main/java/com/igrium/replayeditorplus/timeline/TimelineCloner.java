@@ -0,0 +1,114 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.replaymod.replaystudio.pathing.PathingRegistry;
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.CubicSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+
+/**
+ * Deep-copies timelines in memory. Produces the same result as a round trip
+ * through {@link TimelineSerialization}, without writing and parsing JSON.
+ */
+public final class TimelineCloner {
+    private TimelineCloner() {}
+
+    /**
+     * Create a deep copy of a timeline. Interpolations of the copy are not
+     * baked; call {@link Path#updateAll()} before using it.
+     * 
+     * @param registry The registry to create the new timeline with.
+     * @param source   The timeline to copy.
+     * @return The copy.
+     * @throws UnsupportedOperationException If the timeline uses an
+     *                                       interpolator that can't be copied
+     *                                       directly.
+     */
+    public static Timeline clone(PathingRegistry registry, Timeline source) throws UnsupportedOperationException {
+        Timeline copy = registry.createTimeline();
+        Map<Interpolator, Interpolator> interpolators = new IdentityHashMap<>();
+
+        for (Path path : source.getPaths()) {
+            Path pathCopy = copy.createPath();
+
+            for (Keyframe keyframe : path.getKeyframes()) {
+                Keyframe keyframeCopy = pathCopy.insert(keyframe.getTime());
+                copyValues(copy, keyframe, keyframeCopy);
+            }
+
+            // Keyframes were inserted in order, so the segments line up.
+            Iterator<PathSegment> segmentCopies = pathCopy.getSegments().iterator();
+            for (PathSegment segment : path.getSegments()) {
+                PathSegment segmentCopy = segmentCopies.next();
+                Interpolator interpolator = segment.getInterpolator();
+                if (interpolator == null) continue;
+
+                Interpolator interpolatorCopy = interpolators.get(interpolator);
+                if (interpolatorCopy == null) {
+                    interpolatorCopy = cloneInterpolator(copy, interpolator);
+                    interpolators.put(interpolator, interpolatorCopy);
+                }
+                segmentCopy.setInterpolator(interpolatorCopy);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * Copy all the property values of a keyframe onto another keyframe.
+     * @param timeline The timeline the target keyframe belongs to.
+     * @param from     The keyframe to copy from.
+     * @param to       The keyframe to copy to.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void copyValues(Timeline timeline, Keyframe from, Keyframe to) {
+        for (Property property : from.getProperties()) {
+            Property target = resolveProperty(timeline, property);
+            from.getValue(property).ifPresent(value -> to.setValue(target, value));
+        }
+    }
+
+    /**
+     * Create an unbaked copy of an interpolator.
+     * @param timeline     The timeline the copy will belong to.
+     * @param interpolator The interpolator to copy.
+     * @return The copy.
+     * @throws UnsupportedOperationException If the interpolator type is unknown.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Interpolator cloneInterpolator(Timeline timeline, Interpolator interpolator)
+            throws UnsupportedOperationException {
+        Interpolator copy;
+        if (interpolator instanceof CatmullRomSplineInterpolator catmullRom) {
+            copy = new CatmullRomSplineInterpolator(catmullRom.getAlpha());
+        } else if (interpolator instanceof CubicSplineInterpolator) {
+            copy = new CubicSplineInterpolator();
+        } else if (interpolator instanceof LinearInterpolator) {
+            copy = new LinearInterpolator();
+        } else {
+            throw new UnsupportedOperationException("Unknown interpolator type: " + interpolator.getClass().getName());
+        }
+
+        for (Property property : interpolator.getKeyframeProperties()) {
+            copy.registerProperty(resolveProperty(timeline, property));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Property resolveProperty(Timeline timeline, Property property) {
+        Property registered = timeline.getProperty(property.getId());
+        return registered != null ? registered : property;
+    }
+}
@@ -0,0 +1,119 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+
+/**
+ * Computes a 64-bit hash of everything in a timeline that affects playback:
+ * keyframe times, keyframe values and which interpolator each segment uses.
+ * Much cheaper than cloning or interpolating the timeline, so it can be used
+ * to tell whether a timeline changed since it was last prepared.
+ */
+public final class TimelineFingerprint {
+    private TimelineFingerprint() {}
+
+    private static final long PRIME = 0x100000001B3L;
+
+    /**
+     * Compute the fingerprint of a timeline.
+     * @param timeline The timeline.
+     * @return The fingerprint.
+     */
+    public static long of(Timeline timeline) {
+        return of(timeline, false);
+    }
+
+    /**
+     * Compute a fingerprint of a timeline's contents, which is the same for
+     * any copy of it. Unlike {@link #of}, which interpolator instance each
+     * segment uses doesn't matter, only the interpolators' settings and which
+     * segments share one.
+     * @param timeline The timeline.
+     * @return The fingerprint.
+     */
+    public static long ofContents(Timeline timeline) {
+        return of(timeline, true);
+    }
+
+    private static long of(Timeline timeline, boolean contents) {
+        long hash = 0xCBF29CE484222325L;
+        for (Path path : timeline.getPaths()) {
+            hash = mix(hash, path.getKeyframes().size());
+            for (Keyframe keyframe : path.getKeyframes()) {
+                hash = mix(hash, keyframe.getTime());
+                hash = mix(hash, valuesHash(keyframe));
+            }
+            // Number interpolators by first use, so sharing is hashed without identities.
+            Map<Interpolator, Integer> indices = contents ? new IdentityHashMap<>() : null;
+            for (PathSegment segment : path.getSegments()) {
+                Interpolator interpolator = segment.getInterpolator();
+                if (contents && interpolator != null) {
+                    hash = mix(hash, indices.computeIfAbsent(interpolator, i -> indices.size()));
+                    hash = mix(hash, interpolatorHash(interpolator));
+                } else {
+                    hash = mix(hash, interpolatorHash(interpolator));
+                    if (interpolator != null) hash = mix(hash, System.identityHashCode(interpolator));
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Compute a hash of a keyframe's property values. Doesn't depend on the
+     * order the properties are stored in.
+     * <p>
+     * Values are hashed through their property parts in order, rather than
+     * with {@link Object#hashCode()}: the tuples positions and rotations are
+     * stored in XOR their components' hashes, so swapping two coordinates
+     * wouldn't change the hash.
+     *
+     * @param keyframe The keyframe.
+     * @return The hash.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static long valuesHash(Keyframe keyframe) {
+        long hash = 0;
+        for (Property property : keyframe.getProperties()) {
+            Object value = keyframe.getValue(property).orElse(null);
+            long valueHash = property.getId().hashCode();
+            if (value != null && !property.getParts().isEmpty()) {
+                for (Object part : property.getParts()) {
+                    valueHash = mix(valueHash, Double.doubleToLongBits(((PropertyPart) part).toDouble(value)));
+                }
+            } else {
+                valueHash = mix(valueHash, Objects.hashCode(value));
+            }
+            hash += mix(valueHash, PRIME);
+        }
+        return hash;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static long interpolatorHash(Interpolator interpolator) {
+        if (interpolator == null) return 0;
+        long hash = interpolator.getClass().getName().hashCode();
+        if (interpolator instanceof CatmullRomSplineInterpolator catmullRom) {
+            hash = mix(hash, Double.doubleToLongBits(catmullRom.getAlpha()));
+        }
+        for (Property property : interpolator.getKeyframeProperties()) {
+            hash += property.getId().hashCode();
+        }
+        return hash;
+    }
+
+    static long mix(long hash, long value) {
+        hash = (hash ^ value) * PRIME;
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,186 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Keeps several named timelines prepared for playback, so switching between
+ * alternate takes doesn't require preparing from scratch. Each timeline has
+ * its own {@link PlaybackPreparer}, so an edit to one only invalidates that
+ * one.
+ * <p>
+ * Only a limited number of timelines are kept prepared. When the cap is
+ * exceeded, the preparation of the least recently used timeline is discarded.
+ * The timeline itself stays registered and is prepared again the next time
+ * it's used.
+ * <p>
+ * Must be used on the render thread, like {@link PlaybackPreparer#prepareAsync}.
+ */
+public class TimelinePool {
+
+    private static class Entry {
+        final SPTimeline timeline;
+        final PlaybackPreparer preparer = new PlaybackPreparer();
+        boolean warm;
+        boolean ignoreTimeKeyframes;
+
+        Entry(SPTimeline timeline) {
+            this.timeline = timeline;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, .75f, true);
+    private int maxPrepared;
+
+    /**
+     * Create a timeline pool.
+     * @param maxPrepared The maximum number of timelines to keep prepared.
+     */
+    public TimelinePool(int maxPrepared) {
+        this.maxPrepared = maxPrepared;
+    }
+
+    /**
+     * Get the maximum number of timelines to keep prepared.
+     */
+    public int getMaxPrepared() {
+        return maxPrepared;
+    }
+
+    /**
+     * Set the maximum number of timelines to keep prepared, discarding the
+     * least recently used preparations if necessary.
+     */
+    public void setMaxPrepared(int maxPrepared) {
+        this.maxPrepared = maxPrepared;
+        evict();
+    }
+
+    /**
+     * Register a timeline and mark it as most recently used, so the next call
+     * to {@link #warm} prepares it.
+     * @param name     The timeline's name. Replaces any timeline with the same
+     *                 name.
+     * @param timeline The timeline.
+     */
+    public void put(String name, SPTimeline timeline) {
+        Entry prev = entries.get(name);
+        if (prev != null && prev.timeline == timeline) return;
+        Entry entry = new Entry(timeline);
+        entry.warm = true;
+        entries.put(name, entry);
+        evict();
+    }
+
+    /**
+     * Unregister a timeline.
+     * @param name The timeline's name.
+     * @return Whether there was a timeline with that name.
+     */
+    public boolean remove(String name) {
+        return entries.remove(name) != null;
+    }
+
+    /**
+     * Get a registered timeline.
+     * @param name The timeline's name.
+     * @return The timeline, or <code>null</code> if there is none with that name.
+     */
+    @Nullable
+    public SPTimeline get(String name) {
+        Entry entry = entries.get(name);
+        return entry != null ? entry.timeline : null;
+    }
+
+    /**
+     * Get the names of all registered timelines, from least to most recently
+     * used.
+     */
+    public Set<String> getNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * Prepare a registered timeline for playback, marking it as most recently
+     * used. Returns immediately if it's already prepared and hasn't been
+     * edited.
+     *
+     * @param name                The timeline's name.
+     * @param ignoreTimeKeyframes Don't check whether there's enough time
+     *                            keyframes.
+     * @param executor            The executor to interpolate on.
+     * @return A future for the playable timeline.
+     * @throws IllegalArgumentException If there's no timeline with that name.
+     * @see PlaybackPreparer#prepareAsync
+     */
+    public CompletableFuture<Timeline> prepareAsync(String name, boolean ignoreTimeKeyframes, Executor executor)
+            throws IllegalArgumentException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No timeline named '" + name + "'");
+        }
+        entry.warm = true;
+        entry.ignoreTimeKeyframes = ignoreTimeKeyframes;
+        evict();
+        return entry.preparer.prepareAsync(entry.timeline, ignoreTimeKeyframes, executor);
+    }
+
+    /**
+     * Bring every timeline that's kept prepared up to date with its edits,
+     * without changing how recently it was used. Timelines that weren't
+     * edited cost only a fingerprint check, and timelines that are still
+     * being prepared are left alone.
+     *
+     * @param executor The executor to interpolate on.
+     */
+    public void warm(Executor executor) {
+        for (Entry entry : entries.values()) {
+            if (!entry.warm || entry.preparer.isPreparing()) continue;
+            // Failures are reported when the timeline is actually played.
+            entry.preparer.prepareAsync(entry.timeline, entry.ignoreTimeKeyframes, executor);
+        }
+    }
+
+    /**
+     * Unregister every timeline.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Discard every preparation, keeping the timelines registered.
+     */
+    public void reset() {
+        for (Entry entry : entries.values()) {
+            entry.preparer.reset();
+            entry.warm = false;
+        }
+    }
+
+    private void evict() {
+        int warm = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.warm) warm++;
+        }
+
+        // Entries iterate from least to most recently used.
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (warm > maxPrepared && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.warm) continue;
+            entry.preparer.reset();
+            entry.warm = false;
+            warm--;
+        }
+    }
+}
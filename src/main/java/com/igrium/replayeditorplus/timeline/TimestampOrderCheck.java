@@ -0,0 +1,72 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.igrium.replayeditorplus.timeline.IncrementalPathUpdater.PathChanges;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+
+/**
+ * Checks that the replay timestamps of a time path never go backwards. Only
+ * re-checks the keyframes around the ones that changed since the last check.
+ */
+public class TimestampOrderCheck {
+
+    /**
+     * Keyframes whose timestamp is lower than the one before them.
+     */
+    private final Set<Keyframe> violations = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Update the check with the latest changes to the time path.
+     * @param changes The changes returned by {@link IncrementalPathUpdater}.
+     * @return If the timestamps are in order.
+     * @throws IllegalStateException If a keyframe is missing its timestamp.
+     */
+    public boolean update(PathChanges changes) throws IllegalStateException {
+        List<Keyframe> keyframes = changes.getKeyframes();
+        if (changes.isStructural()) {
+            violations.clear();
+            for (int i = 0; i < keyframes.size(); i++) {
+                check(keyframes, i);
+            }
+        } else {
+            for (int i : changes.getChangedIndices()) {
+                check(keyframes, i);
+                if (i + 1 < keyframes.size()) check(keyframes, i + 1);
+            }
+        }
+        return violations.isEmpty();
+    }
+
+    /**
+     * Whether the timestamps were in order as of the last update.
+     */
+    public boolean isValid() {
+        return violations.isEmpty();
+    }
+
+    /**
+     * Forget all state so the next update checks every keyframe.
+     */
+    public void reset() {
+        violations.clear();
+    }
+
+    private void check(List<Keyframe> keyframes, int index) {
+        Keyframe keyframe = keyframes.get(index);
+        int lastTime = index > 0 ? getTimestamp(keyframes.get(index - 1)) : 0;
+        if (getTimestamp(keyframe) < lastTime) {
+            violations.add(keyframe);
+        } else {
+            violations.remove(keyframe);
+        }
+    }
+
+    private static int getTimestamp(Keyframe keyframe) {
+        return keyframe.getValue(TimestampProperty.PROPERTY).orElseThrow(IllegalStateException::new);
+    }
+}
@@ -0,0 +1,235 @@
+package com.igrium.replayeditorplus.timeline;
+
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.igrium.replayeditorplus.mixins.CombinedChangeAccessor;
+import com.igrium.replayeditorplus.mixins.TimelineImplAccessor;
+import com.replaymod.replaystudio.pathing.change.Change;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Manages the undo history of the current timeline, keeping its size within a
+ * memory budget.
+ * <p>
+ * Replay Mod already records every edit as a {@link Change} that knows how to
+ * revert itself, so each entry costs memory proportional to what it touched
+ * rather than to the timeline. This class estimates that cost from each change
+ * as it's pushed, keeps a running total of both stacks, and discards the
+ * oldest changes once the total exceeds the budget. Undo and redo only move
+ * changes between the stacks, so they leave the total alone.
+ * <p>
+ * Must be used on the render thread, except for {@link #canUndo()},
+ * {@link #canRedo()} and the budget accessors.
+ */
+public class UndoHistory {
+
+    /**
+     * The estimated cost of a change that touches no keyframes, in bytes.
+     */
+    public static final long CHANGE_OVERHEAD = 128;
+
+    /**
+     * The estimated cost of each keyframe a change touches, in bytes.
+     */
+    public static final long KEYFRAME_COST = 256;
+
+    private final Supplier<SPTimeline> spTimeline;
+    private volatile long memoryBudget;
+
+    // Render thread
+    @Nullable
+    private Timeline lastTimeline;
+    private Map<Change, Long> costs = new IdentityHashMap<>();
+    private long total;
+    private final Consumer<Change> changeListener = this::onPushChange;
+
+    private volatile long size;
+    private volatile boolean canUndo;
+    private volatile boolean canRedo;
+
+    /**
+     * Create an undo history.
+     * @param spTimeline   Supplies the timeline whose history to manage.
+     * @param memoryBudget The maximum estimated size of the history, in bytes.
+     */
+    public UndoHistory(Supplier<SPTimeline> spTimeline, long memoryBudget) {
+        this.spTimeline = spTimeline;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Get the maximum estimated size of the history.
+     * @return Memory budget in bytes.
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Set the maximum estimated size of the history. The oldest changes are
+     * discarded on the next frame if it's exceeded.
+     * @param memoryBudget Memory budget in bytes.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Get the estimated size of the history as of the last frame.
+     * @return Size in bytes.
+     */
+    public long getEstimatedSize() {
+        return size;
+    }
+
+    /**
+     * Whether there was a change to undo as of the last frame.
+     */
+    public boolean canUndo() {
+        return canUndo;
+    }
+
+    /**
+     * Whether there was a change to redo as of the last frame.
+     */
+    public boolean canRedo() {
+        return canRedo;
+    }
+
+    /**
+     * Undo the last change to the current timeline.
+     * @return If there was a change to undo.
+     */
+    public boolean undo() {
+        Timeline timeline = currentTimeline();
+        if (timeline == null || timeline.peekUndoStack() == null) return false;
+        timeline.undoLastChange();
+        onFrame();
+        return true;
+    }
+
+    /**
+     * Redo the last undone change to the current timeline.
+     * @return If there was a change to redo.
+     */
+    public boolean redo() {
+        Timeline timeline = currentTimeline();
+        if (timeline == null || timeline.peekRedoStack() == null) return false;
+        timeline.redoLastChange();
+        onFrame();
+        return true;
+    }
+
+    /**
+     * Called on the render thread every frame. Only does work when the
+     * timeline changed or the history is over budget.
+     */
+    public void onFrame() {
+        Timeline timeline = currentTimeline();
+        if (timeline != lastTimeline) {
+            if (lastTimeline instanceof ObservableTimeline observable) observable.setChangeListener(null);
+            lastTimeline = timeline;
+            costs = new IdentityHashMap<>();
+            total = 0;
+            if (timeline instanceof ObservableTimeline observable) observable.setChangeListener(changeListener);
+        }
+
+        if (!(timeline instanceof TimelineImplAccessor accessor)) {
+            size = 0;
+            canUndo = timeline != null && timeline.peekUndoStack() != null;
+            canRedo = timeline != null && timeline.peekRedoStack() != null;
+            return;
+        }
+
+        Deque<Change> undoStack = accessor.getUndoStack();
+        Deque<Change> redoStack = accessor.getRedoStack();
+
+        // Pushes are counted as they happen. Anything else that adds or drops
+        // changes, like a revert clearing the stacks, changes their size.
+        if (undoStack.size() + redoStack.size() != costs.size()) {
+            resync(undoStack, redoStack);
+        }
+
+        // Discard the oldest undos first, then the furthest redos. Keep the latest undo.
+        long budget = memoryBudget;
+        while (total > budget && undoStack.size() > 1) {
+            total -= costs.remove(undoStack.removeLast());
+        }
+        while (total > budget && !redoStack.isEmpty()) {
+            total -= costs.remove(redoStack.removeLast());
+        }
+
+        size = total;
+        canUndo = !undoStack.isEmpty();
+        canRedo = !redoStack.isEmpty();
+    }
+
+    /**
+     * Called just before a change is pushed onto the current timeline's undo
+     * stack, which clears its redo stack.
+     */
+    private void onPushChange(Change change) {
+        if (lastTimeline instanceof TimelineImplAccessor accessor) {
+            for (Change discarded : accessor.getRedoStack()) {
+                Long cost = costs.remove(discarded);
+                if (cost != null) total -= cost;
+            }
+        }
+        long cost = estimateCost(change);
+        if (costs.put(change, cost) == null) total += cost;
+    }
+
+    /**
+     * Recount both stacks, keeping the costs of changes that were already
+     * counted.
+     */
+    private void resync(Deque<Change> undoStack, Deque<Change> redoStack) {
+        Map<Change, Long> newCosts = new IdentityHashMap<>(Math.max(16, (undoStack.size() + redoStack.size()) * 2));
+        long newTotal = 0;
+        for (Change change : undoStack) {
+            newTotal += copyCost(change, newCosts);
+        }
+        for (Change change : redoStack) {
+            newTotal += copyCost(change, newCosts);
+        }
+        costs = newCosts;
+        total = newTotal;
+    }
+
+    private long copyCost(Change change, Map<Change, Long> newCosts) {
+        Long cost = costs.get(change);
+        if (cost == null) cost = estimateCost(change);
+        newCosts.put(change, cost);
+        return cost;
+    }
+
+    /**
+     * Estimate how much memory a change holds onto, from the number of
+     * keyframe edits it's made of.
+     * @param change The change.
+     * @return The estimated cost in bytes.
+     */
+    public static long estimateCost(Change change) {
+        if (change instanceof CombinedChangeAccessor combined) {
+            long cost = CHANGE_OVERHEAD;
+            for (Change child : combined.getChanges()) {
+                cost += estimateCost(child);
+            }
+            return cost;
+        }
+        return CHANGE_OVERHEAD + KEYFRAME_COST;
+    }
+
+    @Nullable
+    private Timeline currentTimeline() {
+        SPTimeline timeline = spTimeline.get();
+        return timeline != null ? timeline.getTimeline() : null;
+    }
+}
@@ -0,0 +1,183 @@
+package com.igrium.replayeditorplus.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
+import com.igrium.replayeditorplus.ui.controls.TimelineUI;
+import com.igrium.replayeditorplus.ui.controls.TimelineUI.TimelineMarker;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Mirrors the keyframes of the current {@link SPTimeline} as markers in a
+ * timeline, with one lane for the position path and one for the time path.
+ * <p>
+ * The keyframes are diffed against the last sync on the render thread, and
+ * only the markers of keyframes that were added, removed or moved are touched
+ * on the FX thread. The marker list is never rebuilt unless the timeline
+ * itself is swapped out.
+ */
+public class KeyframeLaneSync {
+
+    /**
+     * The lane of position keyframes.
+     */
+    public static final int POSITION_LANE = 0;
+
+    /**
+     * The lane of time keyframes.
+     */
+    public static final int TIME_LANE = 1;
+
+    /**
+     * The minimum time between two syncs, in nanoseconds.
+     */
+    private static final long SYNC_INTERVAL = 100_000_000;
+
+    private static record Added(Keyframe keyframe, long time, int lane) {
+    }
+
+    private static record Moved(Keyframe keyframe, long time) {
+    }
+
+    private static record Diff(boolean reset, List<Added> added, List<Keyframe> removed, List<Moved> moved,
+            long endTime) {
+    }
+
+    private final TimelineUI timeline;
+    private final Supplier<SPTimeline> spTimeline;
+
+    // Render thread
+    @Nullable
+    private SPTimeline lastSource;
+    private Map<Keyframe, Long> lastTimes = new IdentityHashMap<>();
+    private long lastEndTime = -1;
+    private long lastSync;
+
+    // FX thread
+    private final Map<Keyframe, TimelineMarker<Keyframe>> markers = new IdentityHashMap<>();
+
+    /**
+     * Create a keyframe lane sync.
+     * @param timeline   The timeline to show the keyframes in. Its time is in
+     *                   seconds.
+     * @param spTimeline Supplies the timeline to mirror.
+     */
+    public KeyframeLaneSync(TimelineUI timeline, Supplier<SPTimeline> spTimeline) {
+        this.timeline = timeline;
+        this.spTimeline = spTimeline;
+    }
+
+    /**
+     * Called on the render thread every frame.
+     */
+    public void onFrame() {
+        long now = System.nanoTime();
+        if (now - lastSync < SYNC_INTERVAL) return;
+        lastSync = now;
+
+        Diff diff = diff(spTimeline.get());
+        if (diff != null) {
+            EditorMetrics.onFXThread(() -> apply(diff));
+        }
+    }
+
+    /**
+     * Compare the timeline's keyframes to the last sync.
+     * @return The changes, or <code>null</code> if nothing changed.
+     */
+    @Nullable
+    private Diff diff(@Nullable SPTimeline source) {
+        boolean reset = source != lastSource;
+        if (reset) {
+            lastSource = source;
+            lastTimes.clear();
+        }
+
+        Map<Keyframe, Long> times = new IdentityHashMap<>(Math.max(16, lastTimes.size() * 2));
+        List<Added> added = new ArrayList<>();
+        List<Moved> moved = new ArrayList<>();
+        long endTime = 0;
+
+        if (source != null) {
+            endTime = Math.max(endTime, scanPath(source.getPositionPath(), POSITION_LANE, times, added, moved));
+            endTime = Math.max(endTime, scanPath(source.getTimePath(), TIME_LANE, times, added, moved));
+        }
+
+        List<Keyframe> removed = new ArrayList<>();
+        for (Keyframe keyframe : lastTimes.keySet()) {
+            if (!times.containsKey(keyframe)) removed.add(keyframe);
+        }
+        lastTimes = times;
+
+        if (!reset && added.isEmpty() && removed.isEmpty() && moved.isEmpty() && endTime == lastEndTime) {
+            return null;
+        }
+        lastEndTime = endTime;
+        return new Diff(reset, added, removed, moved, endTime);
+    }
+
+    private long scanPath(Path path, int lane, Map<Keyframe, Long> times, List<Added> added, List<Moved> moved) {
+        long endTime = 0;
+        for (Keyframe keyframe : path.getKeyframes()) {
+            long time = keyframe.getTime();
+            times.put(keyframe, time);
+            endTime = Math.max(endTime, time);
+
+            Long prevTime = lastTimes.get(keyframe);
+            if (prevTime == null) {
+                added.add(new Added(keyframe, time, lane));
+            } else if (prevTime != time) {
+                moved.add(new Moved(keyframe, time));
+            }
+        }
+        return endTime;
+    }
+
+    private void apply(Diff diff) {
+        List<TimelineMarker<?>> list = timeline.getMarkers();
+
+        if (diff.reset()) {
+            Set<TimelineMarker<?>> old = Collections.newSetFromMap(new IdentityHashMap<>());
+            old.addAll(markers.values());
+            list.removeIf(old::contains);
+            markers.clear();
+        }
+
+        if (!diff.removed().isEmpty()) {
+            Set<TimelineMarker<?>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Keyframe keyframe : diff.removed()) {
+                TimelineMarker<Keyframe> marker = markers.remove(keyframe);
+                if (marker != null) removed.add(marker);
+            }
+            list.removeIf(removed::contains);
+        }
+
+        for (Moved move : diff.moved()) {
+            TimelineMarker<Keyframe> marker = markers.get(move.keyframe());
+            if (marker != null) marker.setTime(move.time() / 1000d);
+        }
+
+        if (!diff.added().isEmpty()) {
+            List<TimelineMarker<Keyframe>> added = new ArrayList<>(diff.added().size());
+            for (Added add : diff.added()) {
+                TimelineMarker<Keyframe> marker = new TimelineMarker<>(add.keyframe(), add.time() / 1000d, add.lane());
+                markers.put(add.keyframe(), marker);
+                added.add(marker);
+            }
+            list.addAll(added);
+        }
+
+        // Leave a second past the last keyframe so it isn't drawn on the edge.
+        timeline.setEnd(Math.max(10, diff.endTime() / 1000d + 1));
+    }
+}
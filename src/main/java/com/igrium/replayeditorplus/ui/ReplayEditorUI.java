@@ -1,12 +1,20 @@
 package com.igrium.replayeditorplus.ui;
 
+import org.apache.logging.log4j.LogManager;
+
 import com.igrium.craftfx.viewport.EngineViewport;
 import com.igrium.craftfx.viewport.PrimaryViewport;
 import com.igrium.craftfx.viewport.StandardInputController;
 import com.igrium.replayeditorplus.ReplayEditor;
 
 import javafx.fxml.FXML;
+import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.MenuItem;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Scale;
 
 public class ReplayEditorUI {
     public static final String FXML = "/assets/replayeditorplus/ui/editor_ui.fxml";
@@ -17,9 +25,35 @@ public class ReplayEditorUI {
     @FXML
     private TimelineWindow timelineWindowController;
 
+    @FXML
+    private StatsOverlay statsOverlay;
+
+    @FXML
+    private CheckMenuItem showStatsItem;
+
+    @FXML
+    private MenuItem undoItem;
+
+    @FXML
+    private MenuItem redoItem;
+
+    /**
+     * The width of captured thumbnails, in pixels.
+     */
+    public static final int THUMBNAIL_WIDTH = 128;
+
+    /**
+     * The minimum real time between two opportunistic thumbnail captures, in
+     * nanoseconds.
+     */
+    private static final long CAPTURE_INTERVAL = 250_000_000;
+
     private StandardInputController<?> inputController;
     protected ReplayEditor editor;
 
+    private final ThumbnailCache thumbnailCache = new ThumbnailCache(32L << 20);
+    private long lastCaptureTime;
+
     public final EngineViewport getPrimaryViewport() {
         return primaryViewport;
     }
@@ -32,6 +66,10 @@ public class ReplayEditorUI {
         return editor;
     }
 
+    public final ThumbnailCache getThumbnailCache() {
+        return thumbnailCache;
+    }
+
     /**
      * Internal use only
      */
@@ -39,6 +77,20 @@ public class ReplayEditorUI {
     public void initEditor(ReplayEditor editor) {
         this.editor = editor;
         timelineWindowController.initEditor(editor);
+        timelineWindowController.getDirectTimeline().setThumbnailSource(thumbnailCache);
+
+        // Grab frames as the replay plays or scrubs, as long as we don't have one there yet.
+        editor.replayProperties().gameTimestamp().addListener((obs, oldVal, newVal) -> {
+            int time = (int) (newVal.doubleValue() * 1000);
+            long now = System.nanoTime();
+            if (thumbnailCache.has(time) || now - lastCaptureTime < CAPTURE_INTERVAL) return;
+            lastCaptureTime = now;
+            captureThumbnail(time);
+        });
+        editor.replayProperties().replayHandler().addListener((obs, oldVal, newVal) -> {
+            thumbnailCache.clear();
+            timelineWindowController.getDirectTimeline().refreshFilmstrip();
+        });
         // timeline.timeProperty().bind(editor.replayProperties().gameTimestamp());
     }
     
@@ -57,6 +109,75 @@ public class ReplayEditorUI {
         primaryViewport.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
             primaryViewport.requestFocus();
         });
+        statsOverlay.visibleProperty().bind(showStatsItem.selectedProperty());
+    }
+
+    @FXML
+    protected void onSave() {
+        if (editor == null) return;
+        editor.saveTimeline().exceptionally(e -> {
+            LogManager.getLogger().error("Unable to save timeline.", e);
+            return null;
+        });
+    }
+
+    @FXML
+    protected void onRevert() {
+        if (editor != null) editor.revertTimeline();
+    }
+
+    @FXML
+    protected void onEditMenuShowing() {
+        if (editor == null) return;
+        undoItem.setDisable(!editor.getUndoHistory().canUndo());
+        redoItem.setDisable(!editor.getUndoHistory().canRedo());
+    }
+
+    @FXML
+    protected void onEditMenuHidden() {
+        // Disabled items ignore their accelerators, and the history may change before the menu opens again.
+        undoItem.setDisable(false);
+        redoItem.setDisable(false);
+    }
+
+    @FXML
+    protected void onUndo() {
+        if (editor != null) editor.undo();
+    }
+
+    @FXML
+    protected void onRedo() {
+        if (editor != null) editor.redo();
+    }
+
+    /**
+     * Capture the primary viewport's current frame as the thumbnail for a
+     * replay time. Must be called on the FX thread. The frame is grabbed on the
+     * next pulse and compressed in the background, so this returns right away.
+     *
+     * @param time The replay time the viewport is showing, in milliseconds.
+     */
+    public void captureThumbnail(int time) {
+        double width = primaryViewport.getWidth();
+        double height = primaryViewport.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        double scale = THUMBNAIL_WIDTH / width;
+        SnapshotParameters params = new SnapshotParameters();
+        params.setTransform(new Scale(scale, scale));
+        params.setFill(Color.BLACK);
+
+        WritableImage image = new WritableImage(THUMBNAIL_WIDTH, Math.max(1, (int) (height * scale)));
+        primaryViewport.snapshot(result -> {
+            thumbnailCache.put(time, result.getImage()).whenComplete((v, e) -> {
+                if (e != null) {
+                    LogManager.getLogger().error("Unable to store thumbnail.", e);
+                } else {
+                    timelineWindowController.getDirectTimeline().refreshFilmstrip();
+                }
+            });
+            return null;
+        }, params, image);
     }
 
     public void close() {
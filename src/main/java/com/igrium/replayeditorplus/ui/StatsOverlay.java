@@ -0,0 +1,63 @@
+package com.igrium.replayeditorplus.ui;
+
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
+import com.igrium.replayeditorplus.metrics.MetricTimer;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.Label;
+
+/**
+ * Shows the editor's metrics on screen. Only updates while visible.
+ */
+public class StatsOverlay extends Label {
+
+    /**
+     * The time between text updates, in nanoseconds.
+     */
+    private static final long UPDATE_INTERVAL = 250_000_000;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        long lastUpdate;
+
+        @Override
+        public void handle(long now) {
+            if (now - lastUpdate < UPDATE_INTERVAL) return;
+            lastUpdate = now;
+            updateText();
+        }
+    };
+
+    public StatsOverlay() {
+        getStyleClass().add("stats-overlay");
+        setStyle("-fx-background-color: rgba(0, 0, 0, 0.6); -fx-text-fill: white; -fx-font-family: monospace; -fx-padding: 4;");
+        setMouseTransparent(true);
+
+        visibleProperty().addListener((obs, oldVal, newVal) -> {
+            EditorMetrics.setDisplayed(newVal);
+            if (newVal) {
+                updateText();
+                timer.start();
+            } else {
+                timer.stop();
+            }
+        });
+        if (isVisible()) {
+            EditorMetrics.setDisplayed(true);
+            timer.start();
+        }
+    }
+
+    private void updateText() {
+        StringBuilder builder = new StringBuilder();
+        for (MetricTimer metric : EditorMetrics.getTimers()) {
+            builder.append(String.format("%-18s avg %7.3f ms  max %7.3f ms  n %d%n", metric.getName(),
+                    toMillis(metric.getAverage()), toMillis(metric.getMax()), metric.getCount()));
+        }
+        builder.append(String.format("%-18s %d", "fxQueueDepth", EditorMetrics.getFxQueueDepth()));
+        setText(builder.toString());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos < 0 ? 0 : nanos / 1e6;
+    }
+}
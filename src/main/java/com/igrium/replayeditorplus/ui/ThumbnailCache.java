@@ -0,0 +1,277 @@
+package com.igrium.replayeditorplus.ui;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.logging.log4j.LogManager;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.igrium.replayeditorplus.ui.controls.ThumbnailSource;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Stores low-resolution replay frames by timestamp. Frames are kept
+ * deflate-compressed, and the least recently used ones are evicted once the
+ * compressed size exceeds a byte budget. A handful of decoded images are kept
+ * on top of that so that redrawing the filmstrip doesn't decompress every
+ * frame each time.
+ * <p>
+ * Not thread safe; only use from the FX thread. Frames are compressed on a
+ * background thread, but stored back on the FX thread.
+ */
+public class ThumbnailCache implements ThumbnailSource {
+
+    private static record Entry(int width, int height, byte[] data) {
+    }
+
+    private static final ExecutorService COMPRESS_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("Thumbnail Compressor %d").setDaemon(true).build());
+
+    /**
+     * Only used on the compression thread.
+     */
+    private static final Deflater COMPRESS_DEFLATER = new Deflater(Deflater.BEST_SPEED);
+
+    private final NavigableMap<Integer, Entry> byTime = new TreeMap<>();
+    private final LinkedHashMap<Integer, Entry> lru = new LinkedHashMap<>(16, .75f, true);
+    private final LinkedHashMap<Integer, Image> decoded = new LinkedHashMap<>(16, .75f, true);
+
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[0];
+
+    private long byteBudget;
+    private int maxDecoded = 64;
+    private int resolution = 1000;
+    private long size;
+    private int generation;
+
+    /**
+     * Create a thumbnail cache.
+     * @param byteBudget The maximum number of compressed bytes to keep.
+     */
+    public ThumbnailCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Get the maximum number of compressed bytes to keep.
+     */
+    public long getByteBudget() {
+        return byteBudget;
+    }
+
+    /**
+     * Set the maximum number of compressed bytes to keep, evicting thumbnails
+     * if necessary.
+     */
+    public void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+        evict();
+    }
+
+    /**
+     * Get the time between stored thumbnails. A thumbnail replaces any other
+     * thumbnail within this distance of it.
+     * @return Resolution in milliseconds.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Set the time between stored thumbnails.
+     * @param resolution Resolution in milliseconds.
+     */
+    public void setResolution(int resolution) {
+        this.resolution = Math.max(1, resolution);
+    }
+
+    /**
+     * Get the number of compressed bytes currently stored.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of thumbnails currently stored.
+     */
+    public int getCount() {
+        return byTime.size();
+    }
+
+    /**
+     * Check whether there's a thumbnail within the cache's resolution of a time.
+     * @param time The time in milliseconds.
+     */
+    public boolean has(int time) {
+        return byTime.containsKey(bucket(time));
+    }
+
+    /**
+     * Store a thumbnail. The pixels are copied right away, but they're
+     * compressed on a background thread, so the thumbnail only shows up once
+     * the returned future completes.
+     *
+     * @param time  The time it was taken at, in milliseconds.
+     * @param image The thumbnail.
+     * @return A future that completes on the FX thread once the thumbnail is
+     *         stored.
+     */
+    public CompletableFuture<Void> put(int time, Image image) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        if (width <= 0 || height <= 0 || image.getPixelReader() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        int[] pixels = new int[width * height];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+        // Anything compressed before a clear() belongs to the old replay.
+        int generation = this.generation;
+        return CompletableFuture.supplyAsync(() -> compress(width, height, pixels), COMPRESS_EXECUTOR)
+                .thenAcceptAsync(entry -> {
+                    if (generation == this.generation) store(time, entry);
+                }, Platform::runLater);
+    }
+
+    private void store(int time, Entry entry) {
+        int key = bucket(time);
+        remove(key);
+        byTime.put(key, entry);
+        lru.put(key, entry);
+        size += entry.data().length;
+        evict();
+    }
+
+    /**
+     * Compress a thumbnail's pixels. Only called on the compression thread.
+     */
+    private static Entry compress(int width, int height, int[] pixels) {
+        ByteBuffer raw = ByteBuffer.allocate(pixels.length * 4);
+        raw.asIntBuffer().put(pixels);
+
+        Deflater deflater = COMPRESS_DEFLATER;
+        deflater.reset();
+        deflater.setInput(raw.array());
+        deflater.finish();
+        byte[] buffer = new byte[raw.capacity() + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        return new Entry(width, height, Arrays.copyOf(buffer, length));
+    }
+
+    @Override
+    public Image getThumbnail(double time) {
+        int key = bucket((int) Math.round(time * 1000));
+        Integer floor = byTime.floorKey(key);
+        Integer ceiling = byTime.ceilingKey(key);
+        Integer nearest = floor == null ? ceiling
+                : ceiling == null ? floor
+                : key - floor <= ceiling - key ? floor : ceiling;
+        // Don't show a frame from somewhere else entirely.
+        if (nearest == null || Math.abs(nearest - key) > resolution) return null;
+
+        Image image = decoded.get(nearest);
+        if (image != null) {
+            lru.get(nearest);
+            return image;
+        }
+
+        Entry entry = lru.get(nearest);
+        image = decode(entry);
+        if (image != null) {
+            decoded.put(nearest, image);
+            if (decoded.size() > maxDecoded) {
+                Iterator<Integer> iterator = decoded.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Remove all thumbnails.
+     */
+    public void clear() {
+        byTime.clear();
+        lru.clear();
+        decoded.clear();
+        size = 0;
+        generation++;
+    }
+
+    private Image decode(Entry entry) {
+        int[] pixels = new int[entry.width() * entry.height()];
+        ensureBuffer(pixels.length * 4);
+        inflater.reset();
+        inflater.setInput(entry.data());
+        try {
+            int length = 0;
+            while (!inflater.finished() && length < pixels.length * 4) {
+                int read = inflater.inflate(buffer, length, pixels.length * 4 - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += read;
+            }
+        } catch (DataFormatException e) {
+            LogManager.getLogger().error("Corrupt thumbnail", e);
+            return null;
+        }
+        IntBuffer ints = ByteBuffer.wrap(buffer, 0, pixels.length * 4).asIntBuffer();
+        ints.get(pixels);
+
+        WritableImage image = new WritableImage(entry.width(), entry.height());
+        image.getPixelWriter().setPixels(0, 0, entry.width(), entry.height(), PixelFormat.getIntArgbInstance(),
+                pixels, 0, entry.width());
+        return image;
+    }
+
+    private void remove(int key) {
+        Entry entry = byTime.remove(key);
+        if (entry != null) {
+            lru.remove(key);
+            decoded.remove(key);
+            size -= entry.data().length;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Integer, Entry>> iterator = lru.entrySet().iterator();
+        while (size > byteBudget && iterator.hasNext()) {
+            Map.Entry<Integer, Entry> eldest = iterator.next();
+            iterator.remove();
+            byTime.remove(eldest.getKey());
+            decoded.remove(eldest.getKey());
+            size -= eldest.getValue().data().length;
+        }
+    }
+
+    private int bucket(int time) {
+        return Math.floorDiv(time, resolution) * resolution;
+    }
+
+    private void ensureBuffer(int length) {
+        if (buffer.length < length) buffer = new byte[length];
+    }
+}
@@ -2,11 +2,17 @@ package com.igrium.replayeditorplus.ui;
 
 import com.igrium.craftfx.util.ThreadUtils;
 import com.igrium.replayeditorplus.ReplayEditor;
+import com.igrium.replayeditorplus.ReplayEditorModule;
+import com.igrium.replayeditorplus.replay.ReplayIndexer;
 import com.igrium.replayeditorplus.ui.controls.TimelineUI;
 
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.BooleanProperty;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Slider;
 import javafx.scene.control.ToggleButton;
@@ -40,14 +46,15 @@ public final class TimelineWindow {
         replayTimeline = new TimelineUI();
         replayTimeline.setPrefScale(64);
 
-        directTimeline.addEventHandler(MouseEvent.MOUSE_CLICKED, event -> {
+        EventHandler<MouseEvent> scrubHandler = event -> {
             if (event.getButton() == MouseButton.PRIMARY) {
-                ThreadUtils.onRenderThread(() -> {
-                    editor.getReplayHandler().doJump((int) (directTimeline.getTimeAt(event.getX()) * 1000), true);
-                });
+                double time = Math.max(0, directTimeline.getTimeAt(event.getX()));
+                editor.getSeekDispatcher().requestSeek((int) (time * 1000));
                 event.consume();
             }
-        });
+        };
+        directTimeline.addEventHandler(MouseEvent.MOUSE_PRESSED, scrubHandler);
+        directTimeline.addEventHandler(MouseEvent.MOUSE_DRAGGED, scrubHandler);
 
         timelineBinding = new ObjectBinding<>() {
             {
@@ -61,6 +68,28 @@ public final class TimelineWindow {
         };
 
         timelinePane.contentProperty().bind(timelineBinding);
+
+        InvalidationListener viewportListener = val -> updateVisibleBounds();
+        timelinePane.hvalueProperty().addListener(viewportListener);
+        timelinePane.viewportBoundsProperty().addListener(viewportListener);
+        timelinePane.contentProperty().addListener(viewportListener);
+        directTimeline.widthProperty().addListener(viewportListener);
+        replayTimeline.widthProperty().addListener(viewportListener);
+    }
+
+    /**
+     * Tell the displayed timeline which part of it is visible in the scroll
+     * pane so it only lays out that area.
+     */
+    private void updateVisibleBounds() {
+        if (!(timelinePane.getContent() instanceof TimelineUI timeline)) return;
+
+        Bounds viewport = timelinePane.getViewportBounds();
+        double scrollRange = timelinePane.getHmax() - timelinePane.getHmin();
+        double scroll = scrollRange > 0 ? (timelinePane.getHvalue() - timelinePane.getHmin()) / scrollRange : 0;
+        double offset = scroll * Math.max(0, timeline.getWidth() - viewport.getWidth());
+
+        timeline.setVisibleBounds(new BoundingBox(offset, 0, viewport.getWidth(), viewport.getHeight()));
     }
 
     @FXML
@@ -92,6 +121,33 @@ public final class TimelineWindow {
         speedSlider.valueProperty().bindBidirectional(editor.playbackSpeedProperty());
 
         replayTimeline.timeProperty().bind(editor.replayProperties().replayTimestamp());
+
+        editor.replayProperties().replayHandler().addListener((obs, oldVal, newVal) -> bindHeatmap());
+        bindHeatmap();
+    }
+
+    /**
+     * Show the activity heatmap of the current replay once it's indexed,
+     * clearing the last replay's in the meantime.
+     */
+    private void bindHeatmap() {
+        directTimeline.setHeatmap(null);
+        ReplayIndexer indexer = ReplayEditorModule.getInstance().getReplayIndexer();
+        if (indexer == null) return;
+        indexer.getFuture().thenAccept(index -> ThreadUtils.onFXThread(() -> {
+            // Another replay may have been opened while this one was indexing.
+            if (ReplayEditorModule.getInstance().getReplayIndexer() == indexer) {
+                directTimeline.setHeatmap(index.getActivity());
+            }
+        }));
+    }
+
+    public TimelineUI getDirectTimeline() {
+        return directTimeline;
+    }
+
+    public TimelineUI getReplayTimeline() {
+        return replayTimeline;
     }
 
     public ReplayEditor getEditor() {
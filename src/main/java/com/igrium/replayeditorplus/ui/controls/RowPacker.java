@@ -0,0 +1,128 @@
+package com.igrium.replayeditorplus.ui.controls;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stacks boxes on top of each other so that none of them overlap. Each box is
+ * placed at the lowest position below its starting position where it doesn't
+ * overlap any box that was placed before it.
+ * <p>
+ * Placed boxes are kept in an interval tree: a treap ordered by left edge,
+ * where each node also knows the furthest right edge in its subtree. Finding
+ * the boxes that share an x-range with a new box skips every subtree that ends
+ * before it or starts after it, so it only visits <i>O(log n)</i> nodes per
+ * overlapping box, however wide the other boxes are. This makes placing
+ * <i>n</i> boxes roughly <i>O(n log n)</i> rather than the <i>O(n&sup2;)</i>
+ * of scanning every placed box for each candidate position.
+ */
+class RowPacker {
+
+    private record Box(double minX, double maxX, double minY, double maxY) {
+    }
+
+    private static final class Node {
+        final Box box;
+        final int priority;
+        double maxX;
+        @Nullable
+        Node left;
+        @Nullable
+        Node right;
+
+        Node(Box box, int priority) {
+            this.box = box;
+            this.priority = priority;
+            this.maxX = box.maxX();
+        }
+
+        void update() {
+            double max = box.maxX();
+            if (left != null) max = Math.max(max, left.maxX);
+            if (right != null) max = Math.max(max, right.maxX);
+            maxX = max;
+        }
+    }
+
+    private static final Comparator<Box> BY_MIN_Y = Comparator.comparingDouble(Box::minY);
+
+    private final Random random = new Random();
+    private final List<Box> overlapping = new ArrayList<>();
+
+    @Nullable
+    private Node root;
+
+    /**
+     * Remove all placed boxes.
+     */
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Place a box.
+     * @param minX The left edge of the box.
+     * @param maxX The right edge of the box.
+     * @param startY The highest position the box may be placed at.
+     * @param height The height of the box.
+     * @return The y position of the top of the box.
+     */
+    public double place(double minX, double maxX, double startY, double height) {
+        overlapping.clear();
+        findOverlapping(root, minX, maxX);
+        overlapping.sort(BY_MIN_Y);
+
+        // Walk down through the boxes that share our x-range until we find a gap we fit in.
+        double y = startY;
+        for (Box box : overlapping) {
+            if (box.minY() >= y + height) break;
+            if (box.maxY() > y) y = box.maxY();
+        }
+
+        root = insert(root, new Node(new Box(minX, maxX, y, y + height), random.nextInt()));
+        return y;
+    }
+
+    private void findOverlapping(@Nullable Node node, double minX, double maxX) {
+        if (node == null || node.maxX <= minX) return;
+        findOverlapping(node.left, minX, maxX);
+        // Everything to the right starts at or after this box.
+        if (node.box.minX() >= maxX) return;
+        if (node.box.maxX() > minX) overlapping.add(node.box);
+        findOverlapping(node.right, minX, maxX);
+    }
+
+    private static Node insert(@Nullable Node node, Node inserted) {
+        if (node == null) return inserted;
+
+        if (inserted.box.minX() < node.box.minX()) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) node = rotateRight(node);
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) node = rotateLeft(node);
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        node.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        node.update();
+        return right;
+    }
+}
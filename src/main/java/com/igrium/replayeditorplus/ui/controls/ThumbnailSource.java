@@ -0,0 +1,20 @@
+package com.igrium.replayeditorplus.ui.controls;
+
+import javafx.scene.image.Image;
+
+/**
+ * Supplies preview frames for a {@link TimelineUI}'s filmstrip.
+ */
+@FunctionalInterface
+public interface ThumbnailSource {
+
+    /**
+     * Get a thumbnail for a point in time. Called on the FX thread, so this
+     * should return quickly.
+     *
+     * @param time The time in seconds.
+     * @return The closest available thumbnail, or <code>null</code> if there
+     *         isn't one near enough.
+     */
+    public Image getThumbnail(double time);
+}
@@ -0,0 +1,42 @@
+package com.igrium.replayeditorplus.ui.controls;
+
+import com.igrium.replayeditorplus.ui.controls.TimelineUI.TimelineMarker;
+
+import javafx.scene.layout.StackPane;
+
+/**
+ * Displays a {@link TimelineMarker} within a timeline. Much like a
+ * <code>ListCell</code>, cells are only created for the markers that are on
+ * screen and get reused as markers scroll in and out of view.
+ */
+public class TimelineCell extends StackPane {
+    private TimelineMarker<?> marker;
+
+    public TimelineCell() {
+        getStyleClass().add("timeline-cell");
+    }
+
+    /**
+     * Get the marker this cell is currently displaying.
+     * @return The marker, or <code>null</code> if this cell is in the pool.
+     */
+    public final TimelineMarker<?> getMarker() {
+        return marker;
+    }
+
+    final void setMarker(TimelineMarker<?> marker) {
+        if (this.marker == marker) return;
+        this.marker = marker;
+        updateMarker(marker);
+    }
+
+    /**
+     * Called when this cell is assigned a different marker. Subclasses should
+     * update their contents here.
+     *
+     * @param marker The new marker, or <code>null</code> if this cell is being
+     *               returned to the pool.
+     */
+    protected void updateMarker(TimelineMarker<?> marker) {
+    }
+}
@@ -4,15 +4,39 @@ import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
-import javafx.geometry.Bounds;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Line;
 
 class TimelineTicks extends Region {
+
+    /**
+     * The ways the ticks can be rendered.
+     */
+    public enum RenderMode {
+        /**
+         * Create a <code>Line</code> node for every tick.
+         */
+        NODES,
+        /**
+         * Draw all the ticks onto a single canvas.
+         */
+        CANVAS
+    }
+
+    /**
+     * Called for every tick that should be drawn.
+     */
+    @FunctionalInterface
+    private interface TickConsumer {
+        void accept(double x, double startY, double endY);
+    }
+
     private final DoubleProperty startProperty = new SimpleDoubleProperty(0);
-    
+
     public double getStart() {
         return startProperty.get();
     }
@@ -67,33 +91,211 @@ class TimelineTicks extends Region {
         return tickColorProperty;
     }
 
+    private final ObjectProperty<RenderMode> renderModeProperty = new SimpleObjectProperty<>(RenderMode.NODES);
+
+    public RenderMode getRenderMode() {
+        return renderModeProperty.get();
+    }
+
+    public void setRenderMode(RenderMode renderMode) {
+        renderModeProperty.set(renderMode);
+    }
+
+    /**
+     * How the ticks are rendered.
+     */
+    public ObjectProperty<RenderMode> renderModeProperty() {
+        return renderModeProperty;
+    }
+
+    private final DoubleProperty visibleStartProperty = new SimpleDoubleProperty(Double.NEGATIVE_INFINITY);
+
+    public double getVisibleStart() {
+        return visibleStartProperty.get();
+    }
+
+    public void setVisibleStart(double visibleStart) {
+        visibleStartProperty.set(visibleStart);
+    }
+
+    /**
+     * The first time that's currently visible on screen. Ticks are only built
+     * around the visible range.
+     */
+    public DoubleProperty visibleStartProperty() {
+        return visibleStartProperty;
+    }
+
+    private final DoubleProperty visibleEndProperty = new SimpleDoubleProperty(Double.POSITIVE_INFINITY);
+
+    public double getVisibleEnd() {
+        return visibleEndProperty.get();
+    }
+
+    public void setVisibleEnd(double visibleEnd) {
+        visibleEndProperty.set(visibleEnd);
+    }
+
+    /**
+     * The last time that's currently visible on screen.
+     */
+    public DoubleProperty visibleEndProperty() {
+        return visibleEndProperty;
+    }
+
+    private final DoubleProperty marginProperty = new SimpleDoubleProperty(256);
+
+    public double getMargin() {
+        return marginProperty.get();
+    }
+
+    public void setMargin(double margin) {
+        marginProperty.set(margin);
+    }
+
+    /**
+     * How many pixels past each side of the visible range to build ticks for.
+     * Ticks are only rebuilt once the visible range leaves this margin.
+     */
+    public DoubleProperty marginProperty() {
+        return marginProperty;
+    }
+
+    private Canvas canvas;
+
+    /**
+     * Whether the ticks need to be rebuilt on the next layout pass.
+     */
+    private boolean dirty = true;
+    private double drawnStart;
+    private double drawnEnd;
+    private double drawnWidth;
+    private double drawnHeight;
+    private double drawnTickDistance;
+
+    /**
+     * The pixel range that the current ticks cover.
+     */
+    private double coveredMinX;
+    private double coveredMaxX;
+
     public TimelineTicks() {
         startProperty.addListener((obs, oldVal, newVal) -> requestLayout());
         endProperty.addListener((obs, oldVal, newVal) -> requestLayout());
         tickDistanceProperty.addListener((obs, oldVal, newVal) -> requestLayout());
+        tickColorProperty.addListener((obs, oldVal, newVal) -> {
+            dirty = true;
+            requestLayout();
+        });
+        renderModeProperty.addListener((obs, oldVal, newVal) -> {
+            getChildren().clear();
+            dirty = true;
+            requestLayout();
+        });
+        visibleStartProperty.addListener((obs, oldVal, newVal) -> requestLayout());
+        visibleEndProperty.addListener((obs, oldVal, newVal) -> requestLayout());
     }
 
     @Override
     protected void layoutChildren() {
-        int numSeconds = (int) Math.ceil(getEnd() - getStart());
+        double width = getWidth();
+        double height = getHeight();
 
-        final double secondWidth = timeToPos(1);
-        final double maxHeight = getHeight() / 2;
-        double lineStart = getHeight();
+        double visibleMinX = Math.max(0, timeToPos(getVisibleStart()));
+        double visibleMaxX = Math.min(width, timeToPos(getVisibleEnd()));
+
+        if (!dirty && drawnStart == getStart() && drawnEnd == getEnd() && drawnWidth == width
+                && drawnHeight == height && drawnTickDistance == getTickDistance()
+                && visibleMinX >= coveredMinX && visibleMaxX <= coveredMaxX) {
+            return;
+        }
+
+        dirty = false;
+        drawnStart = getStart();
+        drawnEnd = getEnd();
+        drawnWidth = width;
+        drawnHeight = height;
+        drawnTickDistance = getTickDistance();
+        coveredMinX = Math.max(0, visibleMinX - getMargin());
+        coveredMaxX = Math.min(width, visibleMaxX + getMargin());
+
+        if (getRenderMode() == RenderMode.CANVAS) {
+            layoutCanvas();
+        } else {
+            layoutNodes();
+        }
+    }
 
+    private void layoutNodes() {
         getChildren().clear();
 
+        forEachTick(coveredMinX, coveredMaxX, (x, startY, endY) -> {
+            Line line = new Line(x, startY, x, endY);
+            line.setStrokeWidth(1);
+            line.strokeProperty().bind(tickColorProperty);
+            getChildren().add(line);
+        });
+    }
+
+    private void layoutCanvas() {
+        if (canvas == null) {
+            canvas = new Canvas();
+            canvas.setManaged(false);
+        }
+        if (getChildren().size() != 1 || getChildren().get(0) != canvas) {
+            getChildren().setAll(canvas);
+        }
+
+        // The canvas only spans the covered range so it stays within texture size limits.
+        double canvasWidth = Math.max(0, coveredMaxX - coveredMinX);
+        double height = getHeight();
+        canvas.setLayoutX(coveredMinX);
+        canvas.setWidth(canvasWidth);
+        canvas.setHeight(height);
+
+        GraphicsContext graphics = canvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, canvasWidth, height);
+        graphics.setStroke(getTickColor());
+        graphics.setLineWidth(1);
+        graphics.beginPath();
+
+        // Offset by half a pixel so single-pixel lines land on the pixel grid.
+        forEachTick(coveredMinX, coveredMaxX, (x, startY, endY) -> {
+            double snappedX = Math.floor(x - coveredMinX) + .5;
+            graphics.moveTo(snappedX, startY);
+            graphics.lineTo(snappedX, endY);
+        });
+
+        graphics.stroke();
+    }
+
+    /**
+     * Compute the position of every tick at every subdivision level within a
+     * pixel range.
+     * @param minX The left edge of the range.
+     * @param maxX The right edge of the range.
+     * @param consumer Called for each tick.
+     */
+    private void forEachTick(double minX, double maxX, TickConsumer consumer) {
+        double duration = getEnd() - getStart();
+        if (duration <= 0 || getWidth() <= 0) return;
+
+        int numSeconds = (int) Math.ceil(duration);
+
+        final double secondWidth = getWidth() / duration;
+        final double maxHeight = getHeight() / 2;
+        double lineStart = getHeight();
+
         int level = 1;
         double subdivision = 1;
         while (secondWidth / (subdivision = Math.pow(2, level - 1)) >= tickDistanceProperty.get()) {
             double lineEnd = lineStart - maxHeight / level;
-            for (int i = 0; i <= numSeconds * subdivision; i++) {
+            double tickWidth = secondWidth / subdivision;
+            int first = (int) Math.max(0, Math.ceil(minX / tickWidth));
+            int last = (int) Math.min(numSeconds * subdivision, Math.floor(maxX / tickWidth));
+            for (int i = first; i <= last; i++) {
                 if (level != 1 && i % 2 == 0) continue; // We already drew this line.
-                double lineX = i * secondWidth / subdivision;
-                Line line = new Line(lineX, lineStart, lineX, lineEnd);
-                line.setStrokeWidth(1);
-                line.strokeProperty().bind(tickColorProperty);
-                getChildren().add(line);
+                consumer.accept(i * tickWidth, lineStart, lineEnd);
             }
             level++;
         }
@@ -102,8 +304,7 @@ class TimelineTicks extends Region {
     private double timeToPos(double time) {
         double start = getStart();
         double end = getEnd();
-        Bounds bounds = getBoundsInLocal();
 
-        return bounds.getMinX() + (time - start) * bounds.getWidth() / (end - start);
+        return (time - start) * getWidth() / (end - start);
     }
 }
@@ -1,36 +1,53 @@
 package com.igrium.replayeditorplus.ui.controls;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.igrium.replayeditorplus.metrics.EditorMetrics;
+import com.igrium.replayeditorplus.replay.ActivityHeatmap;
+import com.igrium.replayeditorplus.replay.ActivityHeatmap.Activity;
 
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import javafx.geometry.HPos;
 import javafx.geometry.VPos;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Polygon;
+import javafx.util.Callback;
 
 /**
  * Renders a timeline preview with a playhead
@@ -111,6 +128,81 @@ public class TimelineUI extends Region {
         }
     }
 
+    /**
+     * A lightweight marker within the timeline. Unlike a {@link TimelineNode},
+     * a marker doesn't own a JavaFX node. Only the markers that are on screen
+     * are displayed, using pooled cells from the timeline's cell factory.
+     */
+    public static class TimelineMarker<T> {
+        private final T item;
+        private final int lane;
+
+        /**
+         * Create a timeline marker that's stacked with the timeline's nodes.
+         * @param item The item this marker represents.
+         * @param time The marker's place in the timeline.
+         */
+        public TimelineMarker(T item, double time) {
+            this(item, time, -1);
+        }
+
+        /**
+         * Create a timeline marker in a fixed lane.
+         * @param item The item this marker represents.
+         * @param time The marker's place in the timeline.
+         * @param lane The lane to display the marker in, or <code>-1</code> to
+         *             stack it with the timeline's nodes.
+         */
+        public TimelineMarker(T item, double time, int lane) {
+            this.item = item;
+            this.lane = lane;
+            this.timeProperty.set(time);
+        }
+
+        /**
+         * Get the item this marker represents.
+         * @return The item.
+         */
+        public final T getItem() {
+            return item;
+        }
+
+        /**
+         * Get the lane this marker is displayed in.
+         * @return The lane index, or <code>-1</code> if the marker is stacked
+         *         with the timeline's nodes.
+         */
+        public final int getLane() {
+            return lane;
+        }
+
+        private DoubleProperty timeProperty = new SimpleDoubleProperty();
+
+        /**
+         * Get the time of this marker.
+         * @return This marker's place in the timeline.
+         */
+        public double getTime() {
+            return timeProperty.get();
+        }
+
+        /**
+         * Set the time of this marker.
+         * @param time This marker's place in the timeline.
+         */
+        public void setTime(double time) {
+            timeProperty.set(time);
+        }
+
+        /**
+         * This marker's place in the timeline.
+         * @return Time property.
+         */
+        public DoubleProperty timeProperty() {
+            return timeProperty;
+        }
+    }
+
     private final DoubleProperty startProperty = new SimpleDoubleProperty(0);
 
     public double getStart() {
@@ -205,12 +297,163 @@ public class TimelineUI extends Region {
         return showTicksProperty;
     }
 
+    private final ObjectProperty<Bounds> visibleBoundsProperty = new SimpleObjectProperty<>();
+
+    /**
+     * Get the part of this timeline that's visible on screen.
+     * @return The visible bounds in local coordinates, or <code>null</code> if
+     *         the entire timeline is visible.
+     */
+    public Bounds getVisibleBounds() {
+        return visibleBoundsProperty.get();
+    }
+
+    /**
+     * Set the part of this timeline that's visible on screen. Only this area
+     * (plus the viewport margin) gets built and laid out.
+     * @param bounds The visible bounds in local coordinates, or
+     *               <code>null</code> if the entire timeline is visible.
+     */
+    public void setVisibleBounds(Bounds bounds) {
+        visibleBoundsProperty.set(bounds);
+    }
+
+    /**
+     * The part of this timeline that's visible on screen, in local coordinates.
+     * If <code>null</code>, the entire timeline is considered visible.
+     */
+    public ObjectProperty<Bounds> visibleBoundsProperty() {
+        return visibleBoundsProperty;
+    }
+
+    private final DoubleProperty viewportMarginProperty = new SimpleDoubleProperty(256);
+
+    public double getViewportMargin() {
+        return viewportMarginProperty.get();
+    }
+
+    public void setViewportMargin(double margin) {
+        viewportMarginProperty.set(margin);
+    }
+
+    /**
+     * How many pixels past each side of the visible bounds get laid out, so
+     * that small scrolls don't reveal empty space.
+     */
+    public DoubleProperty viewportMarginProperty() {
+        return viewportMarginProperty;
+    }
+
+    private final ObjectProperty<ActivityHeatmap> heatmapProperty = new SimpleObjectProperty<>();
+
+    public ActivityHeatmap getHeatmap() {
+        return heatmapProperty.get();
+    }
+
+    public void setHeatmap(ActivityHeatmap heatmap) {
+        heatmapProperty.set(heatmap);
+    }
+
+    /**
+     * The activity to show in a lane along the bottom of the timeline, with
+     * the timeline's time in seconds. If <code>null</code>, no lane is shown.
+     */
+    public ObjectProperty<ActivityHeatmap> heatmapProperty() {
+        return heatmapProperty;
+    }
+
+    private final DoubleProperty heatmapHeightProperty = new SimpleDoubleProperty(16);
+
+    public double getHeatmapHeight() {
+        return heatmapHeightProperty.get();
+    }
+
+    public void setHeatmapHeight(double height) {
+        heatmapHeightProperty.set(height);
+    }
+
+    /**
+     * The height of the activity lane. Each kind of activity gets an equal
+     * share of it.
+     */
+    public DoubleProperty heatmapHeightProperty() {
+        return heatmapHeightProperty;
+    }
+
+    private final DoubleProperty laneHeightProperty = new SimpleDoubleProperty(16);
+
+    public double getLaneHeight() {
+        return laneHeightProperty.get();
+    }
+
+    public void setLaneHeight(double height) {
+        laneHeightProperty.set(height);
+    }
+
+    /**
+     * The height of each marker lane. Lanes start below the filmstrip, if
+     * there is one.
+     */
+    public DoubleProperty laneHeightProperty() {
+        return laneHeightProperty;
+    }
+
+    private final ObjectProperty<ThumbnailSource> thumbnailSourceProperty = new SimpleObjectProperty<>();
+
+    public ThumbnailSource getThumbnailSource() {
+        return thumbnailSourceProperty.get();
+    }
+
+    public void setThumbnailSource(ThumbnailSource source) {
+        thumbnailSourceProperty.set(source);
+    }
+
+    /**
+     * Supplies the frames shown in the filmstrip and the hover preview. If
+     * <code>null</code>, neither is shown.
+     */
+    public ObjectProperty<ThumbnailSource> thumbnailSourceProperty() {
+        return thumbnailSourceProperty;
+    }
+
+    private final DoubleProperty filmstripHeightProperty = new SimpleDoubleProperty(36);
+
+    public double getFilmstripHeight() {
+        return filmstripHeightProperty.get();
+    }
+
+    public void setFilmstripHeight(double height) {
+        filmstripHeightProperty.set(height);
+    }
+
+    /**
+     * The height of the filmstrip row along the top of the timeline. The hover
+     * preview is shown at twice this height.
+     */
+    public DoubleProperty filmstripHeightProperty() {
+        return filmstripHeightProperty;
+    }
+
+    private static final Color[] HEATMAP_COLORS = {
+        Color.LIGHTGRAY,
+        Color.LIMEGREEN,
+        Color.DEEPSKYBLUE,
+        Color.ORANGE
+    };
+
     private ObservableList<TimelineNode<?>> nodes = FXCollections.observableArrayList();
     private BiMap<TimelineNode<?>, Node> baseNodes = HashBiMap.create();
 
+    private ObservableList<TimelineMarker<?>> markers = FXCollections.observableArrayList();
+
     private Node playhead;
     // private Canvas canvas;
     private TimelineTicks timelineTicks;
+    private final Canvas heatmapCanvas = new Canvas();
+    private final Canvas filmstripCanvas = new Canvas();
+    private final ImageView hoverPreview = new ImageView();
+    private double filmstripMinX;
+    private double filmstripMaxX;
 
     /**
      * Get all the nodes that are a part of this timeline.
@@ -220,36 +463,182 @@ public class TimelineUI extends Region {
         return nodes;
     }
 
+    /**
+     * Get all the markers that are a part of this timeline. Markers are
+     * virtualized: only the ones on screen are backed by a cell.
+     * @return A modifiable list of all the markers.
+     */
+    public ObservableList<TimelineMarker<?>> getMarkers() {
+        return markers;
+    }
+
+    private final ObjectProperty<Callback<TimelineUI, TimelineCell>> cellFactoryProperty = new SimpleObjectProperty<>(
+            TimelineUI::createDefaultCell);
+
+    public Callback<TimelineUI, TimelineCell> getCellFactory() {
+        return cellFactoryProperty.get();
+    }
+
+    public void setCellFactory(Callback<TimelineUI, TimelineCell> cellFactory) {
+        cellFactoryProperty.set(cellFactory);
+    }
+
+    /**
+     * Creates the cells that display this timeline's markers.
+     */
+    public ObjectProperty<Callback<TimelineUI, TimelineCell>> cellFactoryProperty() {
+        return cellFactoryProperty;
+    }
+
+    private final IntegerProperty maxPooledCellsProperty = new SimpleIntegerProperty(256);
+
+    public int getMaxPooledCells() {
+        return maxPooledCellsProperty.get();
+    }
+
+    public void setMaxPooledCells(int maxPooledCells) {
+        maxPooledCellsProperty.set(maxPooledCells);
+    }
+
+    /**
+     * The maximum number of unused cells to keep around for reuse. Any more
+     * are removed from the scene graph.
+     */
+    public IntegerProperty maxPooledCellsProperty() {
+        return maxPooledCellsProperty;
+    }
+
+    /**
+     * Markers sorted by time. Rebuilt when a marker is added, removed or moved.
+     */
+    private TimelineMarker<?>[] sortedMarkers = new TimelineMarker<?>[0];
+    private boolean markersDirty;
+
+    private Map<TimelineMarker<?>, TimelineCell> activeCells = new IdentityHashMap<>();
+    private Map<TimelineMarker<?>, TimelineCell> prevActiveCells = new IdentityHashMap<>();
+    private final Deque<TimelineCell> cellPool = new ArrayDeque<>();
+    private final List<TimelineMarker<?>> visibleMarkers = new ArrayList<>();
+
+    /**
+     * Nodes sorted by time. Rebuilt when a node is added, removed or moved.
+     */
+    private TimelineNode<?>[] sortedNodes = new TimelineNode<?>[0];
+    private boolean nodesDirty;
+
+    /**
+     * The nodes that are currently in the scene graph. Nodes outside the
+     * visible range are detached entirely.
+     */
+    private Set<TimelineNode<?>> attachedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Set<TimelineNode<?>> prevAttachedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<TimelineNode<?>> visibleNodes = new ArrayList<>();
+
+    private final RowPacker rowPacker = new RowPacker();
+
     private InvalidationListener invalidationListener = val -> requestLayout();
 
+    private InvalidationListener nodeListener = val -> {
+        nodesDirty = true;
+        requestLayout();
+    };
+
+    private InvalidationListener markerListener = val -> {
+        markersDirty = true;
+        requestLayout();
+    };
+
+    private long layoutCount;
+
+    /**
+     * Get the number of full layout passes this timeline has done. Moving the
+     * playhead doesn't cause a layout pass.
+     * @return Layout pass count.
+     */
+    public long getLayoutCount() {
+        return layoutCount;
+    }
+
     public TimelineUI() {
         nodes.addListener(new ListChangeListener<TimelineNode<?>>() {
 
             public void onChanged(Change<? extends TimelineNode<?>> c) {
-                c.getAddedSubList().forEach(TimelineUI.this::onAddNode);
-                c.getRemoved().forEach(TimelineUI.this::onRemoveNode);
-                playhead.toFront();
+                while (c.next()) {
+                    c.getAddedSubList().forEach(TimelineUI.this::onAddNode);
+                    c.getRemoved().forEach(TimelineUI.this::onRemoveNode);
+                }
+                nodesDirty = true;
+                requestLayout();
+            }
+            
+        });
 
+        markers.addListener(new ListChangeListener<TimelineMarker<?>>() {
+
+            public void onChanged(Change<? extends TimelineMarker<?>> c) {
+                while (c.next()) {
+                    c.getAddedSubList().forEach(marker -> marker.timeProperty().addListener(markerListener));
+                    c.getRemoved().forEach(marker -> marker.timeProperty().removeListener(markerListener));
+                }
+                markersDirty = true;
                 requestLayout();
             }
             
         });
 
+        cellFactoryProperty.addListener((obs, oldVal, newVal) -> {
+            // Cells from the old factory can't be reused.
+            getChildren().removeAll(activeCells.values());
+            getChildren().removeAll(cellPool);
+            activeCells.clear();
+            cellPool.clear();
+            requestLayout();
+        });
+
         timelineTicks = new TimelineTicks();
         timelineTicks.startProperty().bind(startProperty);
         timelineTicks.endProperty().bind(endProperty);
         timelineTicks.tickColorProperty().bind(tickColorProperty);
+        timelineTicks.marginProperty().bind(viewportMarginProperty);
+        timelineTicks.setRenderMode(TimelineTicks.RenderMode.CANVAS);
         timelineTicks.maxWidthProperty().bind(widthProperty());
         timelineTicks.maxHeightProperty().bind(heightProperty());
         getChildren().add(timelineTicks);
 
+        heatmapCanvas.setManaged(false);
+        heatmapCanvas.setMouseTransparent(true);
+        getChildren().add(heatmapCanvas);
+
+        filmstripCanvas.setManaged(false);
+        filmstripCanvas.setMouseTransparent(true);
+        getChildren().add(filmstripCanvas);
+
+        hoverPreview.setManaged(false);
+        hoverPreview.setMouseTransparent(true);
+        hoverPreview.setPreserveRatio(true);
+        hoverPreview.fitHeightProperty().bind(filmstripHeightProperty.multiply(2));
+        hoverPreview.setVisible(false);
+        getChildren().add(hoverPreview);
+
+        addEventHandler(MouseEvent.MOUSE_MOVED, e -> updateHoverPreview(e.getX()));
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, e -> updateHoverPreview(e.getX()));
+        addEventHandler(MouseEvent.MOUSE_EXITED, e -> hoverPreview.setVisible(false));
+
+        // The playhead is unmanaged so moving it never requests a layout pass.
         playhead = createPlayhead();
+        playhead.setManaged(false);
         getChildren().add(playhead);
 
         startProperty.addListener(invalidationListener);
         endProperty.addListener(invalidationListener);
-        timeProperty.addListener(invalidationListener);
+        timeProperty.addListener(val -> updatePlayhead());
         prefScaleProperty.addListener(invalidationListener);
+        visibleBoundsProperty.addListener(invalidationListener);
+        viewportMarginProperty.addListener(invalidationListener);
+        heatmapProperty.addListener(invalidationListener);
+        heatmapHeightProperty.addListener(invalidationListener);
+        thumbnailSourceProperty.addListener(invalidationListener);
+        filmstripHeightProperty.addListener(invalidationListener);
+        laneHeightProperty.addListener(invalidationListener);
     }
 
     private Node createPlayhead() {        
@@ -276,22 +665,44 @@ public class TimelineUI extends Region {
         return group;
     }
 
+    /**
+     * Move the playhead to the current time without doing a layout pass.
+     */
+    private void updatePlayhead() {
+        playhead.setTranslateX(timeToPos(getTime()));
+    }
+
+    private static TimelineCell createDefaultCell(TimelineUI timeline) {
+        TimelineCell cell = new TimelineCell();
+        Polygon diamond = new Polygon(
+            0, -4,
+            4, 0,
+            0, 4,
+            -4, 0
+        );
+        diamond.setFill(Color.LIGHTGRAY);
+        cell.getChildren().add(diamond);
+        return cell;
+    }
+
     private void onAddNode(TimelineNode<?> node) {
-        getChildren().add(node.getNode());
+        // The node is only attached once it's within the visible range.
         baseNodes.put(node, node.getNode());
-        node.timeProperty().addListener(invalidationListener);
+        node.timeProperty().addListener(nodeListener);
     }
 
     private void onRemoveNode(TimelineNode<?> node) {
-        getChildren().remove(node.getNode());
+        if (attachedNodes.remove(node)) {
+            getChildren().remove(node.getNode());
+        }
         baseNodes.remove(node);
-        node.timeProperty().removeListener(invalidationListener);
+        node.timeProperty().removeListener(nodeListener);
     }
 
     private double timeToPos(double time) {
         double start = getStart();
         double end = getEnd();
-        Bounds bounds = getBoundsInLocal();
+        Bounds bounds = getLayoutBounds();
 
         return bounds.getMinX() + (time - start) * bounds.getWidth() / (end - start);
     }
@@ -304,7 +715,7 @@ public class TimelineUI extends Region {
     public double getTimeAt(double x) {
         double start = getStart();
         double end = getEnd();
-        Bounds bounds = getBoundsInLocal();
+        Bounds bounds = getLayoutBounds();
 
         return start + (x - bounds.getMinX()) * (end - start) / bounds.getWidth();
     }
@@ -321,47 +732,286 @@ public class TimelineUI extends Region {
 
     @Override
     protected void layoutChildren() {
+        long startTime = System.nanoTime();
         super.layoutChildren();
+        layoutCount++;
+
         // Set playhead
-        double playheadPos = timeToPos(getTime());
         playhead.autosize();
-        playhead.relocate(playheadPos, 0);
         playhead.toFront();
+        updatePlayhead();
+
+        // Only lay out what's on screen.
+        Bounds visibleBounds = getVisibleBounds();
+        double visibleMinX = visibleBounds != null ? visibleBounds.getMinX() : 0;
+        double visibleMaxX = visibleBounds != null ? visibleBounds.getMaxX() : getWidth();
+        double margin = getViewportMargin();
+        double layoutStart = getTimeAt(visibleMinX - margin);
+        double layoutEnd = getTimeAt(visibleMaxX + margin);
+
+        // The filmstrip sits above the ticks and everything else.
+        double top = getThumbnailSource() != null ? getFilmstripHeight() : 0;
+        filmstripMinX = visibleMinX - margin;
+        filmstripMaxX = visibleMaxX + margin;
+        refreshFilmstrip();
 
         // Canvas
-        layoutInArea(timelineTicks, 0, 0, getWidth(), getHeight(), 0, HPos.LEFT, VPos.TOP);
+        timelineTicks.setVisibleStart(getTimeAt(visibleMinX));
+        timelineTicks.setVisibleEnd(getTimeAt(visibleMaxX));
+        layoutInArea(timelineTicks, 0, top, getWidth(), getHeight() - top, 0, HPos.LEFT, VPos.TOP);
         timelineTicks.toBack();
+
+        layoutHeatmap(visibleMinX - margin, visibleMaxX + margin);
         
-        List<Bounds> occupiedRanges = new ArrayList<>();
-        for (TimelineNode<?> timelineNode : nodes) {
+        rowPacker.clear();
+        layoutNodes(layoutStart, layoutEnd, top);
+        layoutMarkers(layoutStart, layoutEnd, top);
+        hoverPreview.toFront();
+        playhead.toFront();
+
+        EditorMetrics.TIMELINE_LAYOUT.stop(startTime);
+    }
+
+    /**
+     * Redraw the filmstrip without doing a layout pass. Call this when the
+     * thumbnail source has new frames.
+     */
+    public void refreshFilmstrip() {
+        ThumbnailSource source = getThumbnailSource();
+        double minX = Math.floor(Math.max(0, filmstripMinX));
+        double maxX = Math.ceil(Math.min(getWidth(), filmstripMaxX));
+        if (source == null || maxX <= minX) {
+            filmstripCanvas.setVisible(false);
+            return;
+        }
+        filmstripCanvas.setVisible(true);
+
+        double height = getFilmstripHeight();
+        double width = maxX - minX;
+        filmstripCanvas.setLayoutX(minX);
+        filmstripCanvas.setLayoutY(0);
+        filmstripCanvas.setWidth(width);
+        filmstripCanvas.setHeight(height);
+
+        GraphicsContext graphics = filmstripCanvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, width, height);
+
+        // Frames are laid out on a fixed grid so they don't shimmer while scrolling.
+        double frameWidth = height * 16 / 9;
+        for (double x = Math.floor(minX / frameWidth) * frameWidth; x < maxX; x += frameWidth) {
+            Image image = source.getThumbnail(getTimeAt(x + frameWidth / 2));
+            if (image == null) continue;
+            graphics.drawImage(image, x - minX, 0, frameWidth, height);
+        }
+    }
+
+    /**
+     * Show the thumbnail at the hovered time above the mouse.
+     */
+    private void updateHoverPreview(double x) {
+        ThumbnailSource source = getThumbnailSource();
+        Image image = source != null ? source.getThumbnail(getTimeAt(x)) : null;
+        if (image == null) {
+            hoverPreview.setVisible(false);
+            return;
+        }
+        hoverPreview.setImage(image);
+        double previewWidth = hoverPreview.getFitHeight() * image.getWidth() / image.getHeight();
+        hoverPreview.relocate(x - previewWidth / 2, 0);
+        hoverPreview.setVisible(true);
+        hoverPreview.toFront();
+    }
+
+    /**
+     * Draw the activity lane between two x coordinates. Each pixel column shows
+     * the busiest bucket under it, from the heatmap level that matches the
+     * zoom, so drawing is proportional to the number of pixels rather than the
+     * replay's length.
+     */
+    private void layoutHeatmap(double minX, double maxX) {
+        ActivityHeatmap heatmap = getHeatmap();
+        minX = Math.floor(Math.max(0, minX));
+        maxX = Math.ceil(Math.min(getWidth(), maxX));
+        if (heatmap == null || maxX <= minX) {
+            heatmapCanvas.setVisible(false);
+            return;
+        }
+        heatmapCanvas.setVisible(true);
+
+        double laneHeight = getHeatmapHeight();
+        double width = maxX - minX;
+        heatmapCanvas.setLayoutX(minX);
+        heatmapCanvas.setLayoutY(getHeight() - laneHeight);
+        heatmapCanvas.setWidth(width);
+        heatmapCanvas.setHeight(laneHeight);
+
+        GraphicsContext graphics = heatmapCanvas.getGraphicsContext2D();
+        graphics.clearRect(0, 0, width, laneHeight);
+
+        // The heatmap is in milliseconds.
+        double timePerPixel = (getEnd() - getStart()) * 1000 / getWidth();
+        ActivityHeatmap.Level level = heatmap.getLevelFor(timePerPixel);
+
+        Activity[] activities = Activity.values();
+        double rowHeight = laneHeight / activities.length;
+        for (int a = 0; a < activities.length; a++) {
+            Activity activity = activities[a];
+            int maxCount = level.getMaxCount(activity);
+            if (maxCount <= 0) continue;
+            Color color = HEATMAP_COLORS[a % HEATMAP_COLORS.length];
+            double y = a * rowHeight;
+
+            for (int x = 0; x < width; x++) {
+                int count = level.getPeakCount(activity, getTimeAt(minX + x) * 1000, getTimeAt(minX + x + 1) * 1000);
+                if (count <= 0) continue;
+                graphics.setFill(color.deriveColor(0, 1, 1, (double) count / maxCount));
+                graphics.fillRect(x, y, 1, rowHeight);
+            }
+        }
+    }
+
+    /**
+     * Attach and lay out the nodes within a time range, and detach the nodes
+     * that left it. Only the nodes in the range are touched.
+     */
+    private void layoutNodes(double layoutStart, double layoutEnd, double top) {
+        if (nodesDirty) {
+            sortedNodes = nodes.toArray(new TimelineNode<?>[nodes.size()]);
+            Arrays.sort(sortedNodes, Comparator.comparingDouble((TimelineNode<?> node) -> node.getTime()));
+            nodesDirty = false;
+        }
+
+        visibleNodes.clear();
+        for (int i = firstNodeAfter(layoutStart); i < sortedNodes.length; i++) {
+            if (sortedNodes[i].getTime() > layoutEnd) break;
+            visibleNodes.add(sortedNodes[i]);
+        }
+
+        Set<TimelineNode<?>> prevNodes = attachedNodes;
+        attachedNodes = prevAttachedNodes;
+        prevAttachedNodes = prevNodes;
+        attachedNodes.clear();
+
+        List<Node> attach = new ArrayList<>();
+        for (TimelineNode<?> timelineNode : visibleNodes) {
+            attachedNodes.add(timelineNode);
+            if (!prevNodes.remove(timelineNode)) attach.add(timelineNode.getNode());
+        }
+
+        if (!prevNodes.isEmpty()) {
+            Set<Node> detach = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (TimelineNode<?> timelineNode : prevNodes) {
+                detach.add(timelineNode.getNode());
+            }
+            getChildren().removeIf(detach::contains);
+            prevNodes.clear();
+        }
+        getChildren().addAll(attach);
+
+        for (TimelineNode<?> timelineNode : visibleNodes) {
             Node node = timelineNode.getNode();
             node.autosize();
-            
+
             Bounds localBounds = node.getBoundsInLocal();
             double xPos = timeToPos(timelineNode.getTime());
-            double yPos = localBounds.getMinY(); // Start below the top of the frame
-            Bounds bounds = transformBounds(localBounds, xPos, yPos);
-
-            // The complexity of this isn't great, but the data set isn't large so I don't care.
-            Bounds overlapping;
-            while ((overlapping = getIf(occupiedRanges, bounds::intersects)) != null) {
-                yPos = overlapping.getMaxY() + localBounds.getMinY();
-                bounds = transformBounds(localBounds, xPos, yPos);
-            }
-            
-            occupiedRanges.add(bounds);
+            double yPos = rowPacker.place(xPos, xPos + localBounds.getWidth(), top, localBounds.getHeight());
             node.relocate(xPos, yPos);
         }
     }
 
-    private Bounds transformBounds(Bounds bounds, double x, double y) {
-        return new BoundingBox(bounds.getMinX() + x, bounds.getMinY() + y, bounds.getWidth(), bounds.getHeight());
+    /**
+     * Find the index of the first sorted node at or after a given time.
+     */
+    private int firstNodeAfter(double time) {
+        int low = 0;
+        int high = sortedNodes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedNodes[mid].getTime() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
     }
-    
-    private <T> T getIf(Iterable<T> collection, Predicate<T> predicate) {
-        for (T item : collection) {
-            if (predicate.test(item)) return item;
+
+    /**
+     * Assign cells to the markers within a time range and lay them out. Cells
+     * of markers that left the range go back to the pool.
+     */
+    private void layoutMarkers(double layoutStart, double layoutEnd, double top) {
+        if (markersDirty) {
+            sortedMarkers = markers.toArray(new TimelineMarker<?>[markers.size()]);
+            Arrays.sort(sortedMarkers, Comparator.comparingDouble((TimelineMarker<?> marker) -> marker.getTime()));
+            markersDirty = false;
+        }
+
+        visibleMarkers.clear();
+        for (int i = firstMarkerAfter(layoutStart); i < sortedMarkers.length; i++) {
+            if (sortedMarkers[i].getTime() > layoutEnd) break;
+            visibleMarkers.add(sortedMarkers[i]);
+        }
+
+        // Markers that stay on screen keep their cell.
+        Map<TimelineMarker<?>, TimelineCell> prevCells = activeCells;
+        activeCells = prevActiveCells;
+        prevActiveCells = prevCells;
+        activeCells.clear();
+        for (TimelineMarker<?> marker : visibleMarkers) {
+            TimelineCell cell = prevCells.remove(marker);
+            if (cell != null) activeCells.put(marker, cell);
+        }
+
+        for (TimelineCell cell : prevCells.values()) {
+            cell.setMarker(null);
+            cell.setVisible(false);
+            cellPool.push(cell);
+        }
+        prevCells.clear();
+
+        for (TimelineMarker<?> marker : visibleMarkers) {
+            TimelineCell cell = activeCells.get(marker);
+            if (cell == null) {
+                cell = cellPool.poll();
+                if (cell == null) {
+                    cell = getCellFactory().call(this);
+                    cell.setManaged(false);
+                    getChildren().add(cell);
+                }
+                cell.setMarker(marker);
+                cell.setVisible(true);
+                activeCells.put(marker, cell);
+            }
+
+            cell.autosize();
+            Bounds localBounds = cell.getBoundsInLocal();
+            double xPos = timeToPos(marker.getTime());
+            double yPos = marker.getLane() >= 0
+                    ? top + marker.getLane() * getLaneHeight()
+                    : rowPacker.place(xPos, xPos + localBounds.getWidth(), top, localBounds.getHeight());
+            cell.relocate(xPos, yPos);
+        }
+
+        while (cellPool.size() > getMaxPooledCells()) {
+            getChildren().remove(cellPool.pop());
+        }
+    }
+
+    /**
+     * Find the index of the first sorted marker at or after a given time.
+     */
+    private int firstMarkerAfter(double time) {
+        int low = 0;
+        int high = sortedMarkers.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedMarkers[mid].getTime() < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
-        return null;
+        return low;
     }
 }
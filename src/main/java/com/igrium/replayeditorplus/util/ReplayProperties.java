@@ -1,14 +1,17 @@
 package com.igrium.replayeditorplus.util;
 
-import static com.igrium.craftfx.util.ThreadUtils.onFXThread;
+import static com.igrium.replayeditorplus.metrics.EditorMetrics.onFXThread;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jetbrains.annotations.Nullable;
 
-import com.igrium.craftfx.util.ThreadUtils;
 import com.replaymod.pathing.player.RealtimeTimelinePlayer;
 import com.replaymod.replay.ReplayHandler;
 import com.replaymod.replay.ReplaySender;
 
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
@@ -22,19 +25,52 @@ import javafx.beans.value.ObservableObjectValue;
 
 /**
  * Wraps various values from the Replay Mod as JavaFX properties.
+ * <p>
+ * Values are captured on the render thread as a single {@link ReplayState}
+ * snapshot and applied on the FX thread once per pulse. If several snapshots
+ * are published between two pulses, only the newest one is applied.
  */
 public final class ReplayProperties {
+
+    /**
+     * An immutable snapshot of the replay values, as captured on the render
+     * thread.
+     */
+    public static record ReplayState(double gameTimestamp, boolean paused, double replayTimestamp,
+            double replayDuration) {
+    }
     
     private final ObjectProperty<ReplayHandler> handler = new SimpleObjectProperty<>();
 
     @Nullable
     private RealtimeTimelinePlayer timelinePlayer;
 
+    private final AtomicReference<ReplayState> pendingState = new AtomicReference<>();
+    private final AtomicLong appliedSnapshots = new AtomicLong();
+    private final AtomicLong droppedSnapshots = new AtomicLong();
+
+    /**
+     * The last snapshot that was published. Only used to skip publishing
+     * snapshots that didn't change.
+     */
+    private volatile ReplayState lastState;
+
+    private final AnimationTimer pulseListener = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            applyPendingState();
+        }
+    };
+
+    /**
+     * Create a replay properties instance. Must be called on the FX thread.
+     */
     public ReplayProperties() {
         this.handler.addListener((obs, oldVal, newVal) -> {
             timelinePlayer = newVal != null ? new RealtimeTimelinePlayer(newVal) : null;
             update();
         });
+        pulseListener.start();
     }
 
     /**
@@ -72,11 +108,6 @@ public final class ReplayProperties {
         return gameTimestamp.get();
     }
 
-    protected void setGameTimestamp(double timestamp) {
-        if (timestamp == gameTimestamp.get()) return;
-        ThreadUtils.onFXThread(() -> gameTimestamp.set(timestamp));
-    }
-
     private BooleanProperty paused = new SimpleBooleanProperty(true);
 
     private DoubleProperty replayTimestamp = new SimpleDoubleProperty(0);
@@ -119,34 +150,96 @@ public final class ReplayProperties {
     }
 
     /**
-     * Update all the values from the replay handler.
+     * Update all the values from the replay handler. Publishes a new snapshot
+     * if anything changed; the properties themselves are updated on the next
+     * pulse.
      */
     public void update() {
         ReplayHandler handler = this.handler.get();
         if (handler == null) return;
 
-        setDouble(handler.getReplaySender().currentTimeStamp() / 1000d, gameTimestamp);
-        setBool(handler.getReplaySender().paused(), paused);
+        RealtimeTimelinePlayer timelinePlayer = this.timelinePlayer;
+        ReplaySender sender = handler.getReplaySender();
+        update(sender.currentTimeStamp(), sender.paused(),
+                timelinePlayer != null && timelinePlayer.isActive() ? timelinePlayer.getTimePassed() : -1,
+                handler.getReplayDuration());
+    }
+
+    /**
+     * Publish a snapshot from raw replay values. Split from {@link #update()}
+     * so it can be driven without a replay.
+     *
+     * @param gameTimestamp  The replay sender's timestamp, in milliseconds.
+     * @param paused         Whether the replay sender is paused.
+     * @param timePassed     How far the timeline player is into the timeline,
+     *                       in milliseconds, or <code>-1</code> if it isn't
+     *                       playing.
+     * @param replayDuration The duration of the replay, in milliseconds.
+     */
+    void update(int gameTimestamp, boolean paused, long timePassed, int replayDuration) {
+        ReplayState last = lastState;
+        double replayTimestamp;
+        if (timePassed >= 0) {
+            replayTimestamp = timePassed / 1000d;
+        } else {
+            replayTimestamp = last != null ? last.replayTimestamp() : this.replayTimestamp.get();
+        }
+
+        ReplayState state = new ReplayState(
+                gameTimestamp / 1000d,
+                paused,
+                replayTimestamp,
+                replayDuration / 1000d);
 
-        if (timelinePlayer.isActive()) {
-            setDouble(timelinePlayer.getTimePassed() / 1000d, replayTimestamp);
+        if (state.equals(last)) return;
+        lastState = state;
+
+        if (pendingState.getAndSet(state) != null) {
+            droppedSnapshots.incrementAndGet();
         }
+    }
+
+    /**
+     * Apply the newest published snapshot to the properties, if there is one.
+     * Called on the FX thread once per pulse.
+     */
+    private void applyPendingState() {
+        ReplayState state = pendingState.getAndSet(null);
+        if (state == null) return;
 
-        setDouble(handler.getReplayDuration() / 1000d, replayDuration);
+        gameTimestamp.set(state.gameTimestamp());
+        paused.set(state.paused());
+        replayTimestamp.set(state.replayTimestamp());
+        replayDuration.set(state.replayDuration());
+        appliedSnapshots.incrementAndGet();
     }
 
-    private <T> void setVal(T val, Property<T> target) {
-        if (val.equals(target.getValue())) return;
-        onFXThread(() -> target.setValue(val));
+    /**
+     * Get the number of snapshots that have been applied to the properties.
+     * @return Applied snapshot count.
+     */
+    public long getAppliedSnapshots() {
+        return appliedSnapshots.get();
     }
 
-    private void setBool(boolean val, BooleanProperty target)  {
-        if (val == target.get()) return;
-        onFXThread(() -> target.set(val));
+    /**
+     * Get the number of snapshots that were replaced by a newer snapshot before
+     * they could be applied.
+     * @return Dropped snapshot count.
+     */
+    public long getDroppedSnapshots() {
+        return droppedSnapshots.get();
     }
-    
-    private void setDouble(double val, DoubleProperty target) {
-        if (val == target.get()) return;
-        onFXThread(() -> target.set(val));
+
+    /**
+     * Stop listening for pulses. Call when the editor closes.
+     */
+    public void dispose() {
+        pulseListener.stop();
+    }
+
+    private <T> void setVal(T val, Property<T> target) {
+        if (val.equals(target.getValue())) return;
+        onFXThread(() -> target.setValue(val));
     }
 }
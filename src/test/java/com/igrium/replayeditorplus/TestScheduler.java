@@ -0,0 +1,13 @@
+package com.igrium.replayeditorplus;
+
+/**
+ * A render task scheduler whose frames tests can run by hand, standing in for
+ * the render thread.
+ */
+public class TestScheduler extends RenderTaskScheduler {
+
+    @Override
+    public void runFrame() {
+        super.runFrame();
+    }
+}
@@ -0,0 +1,64 @@
+package com.igrium.replayeditorplus.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.igrium.replayeditorplus.replay.ActivityHeatmap.Activity;
+
+public class ActivityHeatmapTest {
+
+    private static final int LENGTH = 600_000;
+
+    /**
+     * Create a ten minute replay with a single burst of chat.
+     */
+    private static ActivityHeatmap createHeatmap(int burstTime, int burstSize) {
+        ActivityHeatmap.Builder builder = new ActivityHeatmap.Builder();
+        for (int time = 0; time < LENGTH; time += 50) {
+            builder.add(Activity.PACKETS, time);
+        }
+        for (int i = 0; i < burstSize; i++) {
+            builder.add(Activity.CHAT, burstTime);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testLevelFor() {
+        ActivityHeatmap heatmap = createHeatmap(0, 1);
+        assertEquals(1000, heatmap.getLevelFor(1).getBucketSize());
+        assertEquals(1000, heatmap.getLevelFor(1000).getBucketSize());
+        assertEquals(10000, heatmap.getLevelFor(1001).getBucketSize());
+        assertEquals(60000, heatmap.getLevelFor(30000).getBucketSize());
+        assertEquals(60000, heatmap.getLevelFor(500000).getBucketSize());
+    }
+
+    @Test
+    public void testBurstBetweenPixels() {
+        // At 5 seconds per pixel, the pixel centers land in seconds 2, 7, 12, 17...
+        ActivityHeatmap heatmap = createHeatmap(13_500, 50);
+        double timePerPixel = 5000;
+        ActivityHeatmap.Level level = heatmap.getLevelFor(timePerPixel);
+
+        int seen = 0;
+        for (double x = 0; x * timePerPixel < LENGTH; x++) {
+            seen = Math.max(seen, level.getCount(Activity.CHAT, (x + .5) * timePerPixel));
+        }
+        assertEquals(50, seen);
+    }
+
+    @Test
+    public void testPeakCount() {
+        ActivityHeatmap heatmap = createHeatmap(123_456, 30);
+        ActivityHeatmap.Level level = heatmap.getLevelFor(300_000);
+        assertEquals(60000, level.getBucketSize());
+
+        assertEquals(30, level.getPeakCount(Activity.CHAT, 0, 300_000));
+        assertEquals(0, level.getPeakCount(Activity.CHAT, 300_000, 600_000));
+        assertEquals(0, level.getPeakCount(Activity.CHAT, 600_000, 900_000));
+        assertEquals(30, heatmap.getLevel(0).getPeakCount(Activity.CHAT, 123_000, 123_001));
+        assertEquals(0, heatmap.getLevel(0).getPeakCount(Activity.CHAT, 122_000, 123_000));
+        assertEquals(0, heatmap.getLevel(0).getPeakCount(Activity.CHAT, -5000, -1000));
+    }
+}
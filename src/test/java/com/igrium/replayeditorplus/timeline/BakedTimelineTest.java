@@ -0,0 +1,130 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.property.Property;
+import com.replaymod.replaystudio.pathing.property.PropertyPart;
+
+public class BakedTimelineTest {
+
+    /**
+     * Baking only checks the halfway point between samples, so the error may
+     * go a little over tolerance elsewhere.
+     */
+    private static final double SLACK = 2;
+
+    @Test
+    public void testWithinTolerance() {
+        for (long seed = 0; seed < 4; seed++) {
+            Timeline timeline = TestTimelines.create(50, seed);
+            BakedTimeline baked = BakedTimeline.bake(timeline);
+
+            assertWithinTolerance(timeline, baked, CameraProperties.POSITION, BakedTimeline.POSITION_TOLERANCE);
+            assertWithinTolerance(timeline, baked, CameraProperties.ROTATION, BakedTimeline.ROTATION_TOLERANCE);
+            assertWithinTolerance(timeline, baked, TimestampProperty.PROPERTY, BakedTimeline.DEFAULT_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testSmoothPathIsBaked() {
+        Timeline timeline = linearTimeline(0, 10_000);
+        BakedTimeline baked = BakedTimeline.bake(timeline);
+
+        assertEquals(0, baked.getLivePathCount());
+        assertTrue(baked.getSampleCount() > 0);
+        assertWithinTolerance(timeline, baked, CameraProperties.POSITION, BakedTimeline.POSITION_TOLERANCE);
+    }
+
+    @Test
+    public void testLongPathIsBaked() {
+        // Three hours, which doesn't fit in the budget at the default interval.
+        long end = 3 * 60 * 60 * 1000L;
+        Timeline timeline = linearTimeline(0, end);
+        BakedTimeline baked = BakedTimeline.bake(timeline);
+
+        assertEquals(0, baked.getLivePathCount());
+        assertTrue(baked.getSampleCount() > 0);
+        long sampleBytes = Long.BYTES + 3 * Double.BYTES + 1;
+        assertTrue(baked.getSampleCount() <= BakedTimeline.MAX_PATH_BYTES / sampleBytes,
+                baked.getSampleCount() + " samples");
+
+        Path path = timeline.getPaths().get(0);
+        for (long t = 0; t <= end; t += end / 1000 + 7) {
+            Triple<Double, Double, Double> live = path.getValue(CameraProperties.POSITION, t).orElseThrow();
+            @SuppressWarnings("unchecked")
+            Triple<Double, Double, Double> value = (Triple<Double, Double, Double>) baked.getValue(0, CameraProperties.POSITION, t);
+            assertEquals(live.getLeft(), value.getLeft(), BakedTimeline.POSITION_TOLERANCE, "x at " + t);
+            assertEquals(live.getRight(), value.getRight(), BakedTimeline.POSITION_TOLERANCE, "z at " + t);
+        }
+    }
+
+    @Test
+    public void testOutsideRange() {
+        Timeline timeline = linearTimeline(1000, 2000);
+        BakedTimeline baked = BakedTimeline.bake(timeline);
+
+        assertNull(baked.getValue(0, CameraProperties.POSITION, 0));
+        assertNotNull(baked.getValue(0, CameraProperties.POSITION, 1500));
+        assertNull(baked.getValue(0, TimestampProperty.PROPERTY, 1500));
+    }
+
+    private static Timeline linearTimeline(long start, long end) {
+        Timeline timeline = TestTimelines.REGISTRY.createTimeline();
+        Path path = timeline.createPath();
+        path.insert(start).setValue(CameraProperties.POSITION, Triple.of(0d, 64d, 0d));
+        path.insert(end).setValue(CameraProperties.POSITION, Triple.of(100d, 64d, -50d));
+
+        Interpolator interpolator = new LinearInterpolator();
+        interpolator.registerProperty(CameraProperties.POSITION);
+        for (PathSegment segment : path.getSegments()) {
+            segment.setInterpolator(interpolator);
+        }
+        path.updateAll();
+        return timeline;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void assertWithinTolerance(Timeline timeline, BakedTimeline baked, Property property,
+            double tolerance) {
+        List<Path> paths = List.copyOf(timeline.getPaths());
+        List<PropertyPart> parts = List.copyOf(property.getParts());
+
+        for (int p = 0; p < paths.size(); p++) {
+            Path path = paths.get(p);
+            List<Keyframe> keyframes = List.copyOf(path.getKeyframes());
+            if (keyframes.isEmpty()) continue;
+            long start = keyframes.get(0).getTime();
+            long end = keyframes.get(keyframes.size() - 1).getTime();
+
+            for (long t = start; t <= end; t++) {
+                Object live = path.getValue(property, t).orElse(null);
+                Object value = baked.getValue(p, property, t);
+                assertEquals(live == null, value == null, property.getId() + " presence at " + t);
+                if (live == null) continue;
+
+                for (PropertyPart part : parts) {
+                    if (!part.isInterpolatable()) continue;
+                    double error = Math.abs(part.toDouble(live) - part.toDouble(value));
+                    assertTrue(error <= tolerance * SLACK,
+                            property.getId() + " off by " + error + " at " + t + " in path " + p);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.replayeditorplus.timeline.CameraPathExporter.Format;
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+
+public class CameraPathExporterTest {
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    private static final int RECORD_SIZE = 8 + 3 * 8 + 3 * 4 + 4 + 4;
+
+    @Test
+    public void testBinary() throws IOException {
+        Timeline timeline = TestTimelines.create(20, 1);
+        List<Path> paths = List.copyOf(timeline.getPaths());
+        Path camera = paths.get(0);
+        Path time = paths.get(1);
+
+        CameraPathExporter exporter = new CameraPathExporter(60, Format.BINARY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = exporter.export(timeline, out);
+
+        long end = lastKeyframe(camera).getTime();
+        assertEquals((long) Math.floor(end * 60 / 1000d) + 1, count);
+        assertEquals(HEADER_SIZE + count * RECORD_SIZE, out.size());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(CameraPathExporter.MAGIC, in.readInt());
+        assertEquals(CameraPathExporter.VERSION, in.readInt());
+        assertEquals(60, in.readDouble());
+        assertEquals(count, in.readLong());
+
+        for (long i = 0; i < count; i++) {
+            long t = Math.round(i * 1000 / 60d);
+            Triple<Double, Double, Double> position = camera.getValue(CameraProperties.POSITION, t).orElseThrow();
+            Triple<Float, Float, Float> rotation = camera.getValue(CameraProperties.ROTATION, t).orElseThrow();
+
+            assertEquals(t / 1000d, in.readDouble());
+            assertEquals(position.getLeft(), in.readDouble(), "x at " + t);
+            assertEquals(position.getMiddle(), in.readDouble(), "y at " + t);
+            assertEquals(position.getRight(), in.readDouble(), "z at " + t);
+            assertEquals(rotation.getLeft(), in.readFloat(), "yaw at " + t);
+            assertEquals(rotation.getMiddle(), in.readFloat(), "pitch at " + t);
+            assertEquals(rotation.getRight(), in.readFloat(), "roll at " + t);
+            assertEquals(exporter.getFov(), in.readFloat());
+            assertEquals(time.getValue(TimestampProperty.PROPERTY, t).orElseThrow(), in.readInt(), "timestamp at " + t);
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        Timeline timeline = TestTimelines.create(20, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new CameraPathExporter(30, Format.CSV).export(timeline, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("time,x,y,z,yaw,pitch,roll,fov,timestamp", lines[0]);
+        assertEquals(count + 1, lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            assertEquals(9, lines[i].split(",").length, "columns in line " + i);
+        }
+    }
+
+    @Test
+    public void testSampleCount() throws IOException {
+        Timeline timeline = linearTimeline(0, 1000);
+        assertEquals(31, new CameraPathExporter(30, Format.BINARY).export(timeline, 0, 1000, OutputStream.nullOutputStream()));
+        assertEquals(24, new CameraPathExporter(24, Format.BINARY).export(timeline, 0, 999, OutputStream.nullOutputStream()));
+        assertEquals(1, new CameraPathExporter(1, Format.BINARY).export(timeline, 500, 500, OutputStream.nullOutputStream()));
+    }
+
+    @Test
+    public void testHoldsValues() throws IOException {
+        Timeline timeline = linearTimeline(1000, 2000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(4, new CameraPathExporter(1, Format.BINARY).export(timeline, 0, 3000, out));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        in.skipNBytes(HEADER_SIZE);
+
+        // Before the path starts, there's nothing to hold.
+        double[] first = readPosition(in);
+        assertTrue(Double.isNaN(first[0]) && Double.isNaN(first[1]) && Double.isNaN(first[2]));
+        assertEquals(-1, in.readInt());
+
+        assertEquals(0, readPosition(in)[0]);
+        in.skipNBytes(4);
+        assertEquals(100, readPosition(in)[0]);
+        in.skipNBytes(4);
+        // After the path ends, its last value is held.
+        assertEquals(100, readPosition(in)[0]);
+        assertEquals(-1, in.readInt());
+    }
+
+    @Test
+    public void testEmptyTimeline() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, new CameraPathExporter(60, Format.BINARY).export(TestTimelines.REGISTRY.createTimeline(), out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    public void testInvalidSampleRate() {
+        assertThrows(IllegalArgumentException.class, () -> new CameraPathExporter(0, Format.CSV));
+        assertThrows(IllegalArgumentException.class, () -> new CameraPathExporter(Double.NaN, Format.CSV));
+    }
+
+    /**
+     * Read a binary record's position, skipping its time and its rotation and
+     * FOV, leaving the timestamp.
+     */
+    private static double[] readPosition(DataInputStream in) throws IOException {
+        in.readDouble();
+        double[] position = { in.readDouble(), in.readDouble(), in.readDouble() };
+        in.skipNBytes(4 * 4);
+        return position;
+    }
+
+    private static Keyframe lastKeyframe(Path path) {
+        List<Keyframe> keyframes = List.copyOf(path.getKeyframes());
+        return keyframes.get(keyframes.size() - 1);
+    }
+
+    private static Timeline linearTimeline(long start, long end) {
+        Timeline timeline = TestTimelines.REGISTRY.createTimeline();
+        Path path = timeline.createPath();
+        path.insert(start).setValue(CameraProperties.POSITION, Triple.of(0d, 64d, 0d));
+        path.insert(end).setValue(CameraProperties.POSITION, Triple.of(100d, 64d, -50d));
+
+        Interpolator interpolator = new LinearInterpolator();
+        interpolator.registerProperty(CameraProperties.POSITION);
+        for (PathSegment segment : path.getSegments()) {
+            segment.setInterpolator(interpolator);
+        }
+        path.updateAll();
+        return timeline;
+    }
+}
@@ -0,0 +1,228 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.PathingRegistry;
+import com.replaymod.replaystudio.pathing.impl.TimelineImpl;
+import com.replaymod.replaystudio.pathing.interpolation.CatmullRomSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.CubicSplineInterpolator;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+/**
+ * Stand-in timelines shaped like Replay Mod's: a camera path with position
+ * and rotation keyframes, and a time path with replay timestamps. Only
+ * ReplayStudio and the property definitions are needed, not a game.
+ */
+public final class TestTimelines {
+    private TestTimelines() {}
+
+    /**
+     * Creates timelines with the camera and timestamp properties, and
+     * serializes the three interpolator types ReplayStudio ships.
+     */
+    public static final PathingRegistry REGISTRY = new PathingRegistry() {
+
+        @Override
+        public Timeline createTimeline() {
+            Timeline timeline = new TimelineImpl();
+            timeline.registerProperty(CameraProperties.POSITION);
+            timeline.registerProperty(CameraProperties.ROTATION);
+            timeline.registerProperty(TimestampProperty.PROPERTY);
+            return timeline;
+        }
+
+        @Override
+        public void serializeInterpolator(JsonWriter writer, Interpolator interpolator) throws IOException {
+            if (interpolator instanceof CatmullRomSplineInterpolator catmullRom) {
+                writer.value("catmull-rom-spline");
+                writer.value(catmullRom.getAlpha());
+            } else if (interpolator instanceof CubicSplineInterpolator) {
+                writer.value("cubic-spline");
+            } else if (interpolator instanceof LinearInterpolator) {
+                writer.value("linear");
+            } else {
+                throw new IOException("Unknown interpolator type: " + interpolator.getClass().getName());
+            }
+        }
+
+        @Override
+        public Interpolator deserializeInterpolator(JsonReader reader) throws IOException {
+            String type = reader.nextString();
+            return switch (type) {
+                case "catmull-rom-spline" -> new CatmullRomSplineInterpolator(reader.nextDouble());
+                case "cubic-spline" -> new CubicSplineInterpolator();
+                case "linear" -> new LinearInterpolator();
+                default -> throw new IOException("Unknown interpolator type: " + type);
+            };
+        }
+    };
+
+    /**
+     * Create a random timeline. Its interpolations are baked.
+     * @param keyframes The number of camera keyframes.
+     * @param seed      The random seed.
+     * @return The timeline.
+     */
+    public static Timeline create(int keyframes, long seed) {
+        Timeline timeline = REGISTRY.createTimeline();
+        Path camera = timeline.createPath();
+        Path timePath = timeline.createPath();
+        fill(camera, timePath, keyframes, seed);
+        return timeline;
+    }
+
+    /**
+     * Create a random timeline like {@link #create}, wrapped the way Replay
+     * Mod's editor uses it. Its interpolations are baked.
+     * @param keyframes The number of camera keyframes.
+     * @param seed      The random seed.
+     * @return The timeline.
+     */
+    public static SPTimeline createSP(int keyframes, long seed) {
+        return createSP(REGISTRY.createTimeline(), keyframes, seed);
+    }
+
+    /**
+     * Fill an empty timeline like {@link #createSP(int, long)}.
+     * @param timeline  The timeline to fill. Must have the camera and
+     *                  timestamp properties registered.
+     * @param keyframes The number of camera keyframes.
+     * @param seed      The random seed.
+     * @return The timeline, wrapped.
+     */
+    public static SPTimeline createSP(Timeline timeline, int keyframes, long seed) {
+        // SPTimeline keeps its time path first.
+        Path timePath = timeline.createPath();
+        Path camera = timeline.createPath();
+        fill(camera, timePath, keyframes, seed);
+        return new SPTimeline(timeline);
+    }
+
+    private static void fill(Path camera, Path timePath, int keyframes, long seed) {
+        Random random = new Random(seed);
+        long time = 0;
+        double x = 0, y = 64, z = 0;
+        for (int i = 0; i < keyframes; i++) {
+            Keyframe keyframe = camera.insert(time);
+            x += random.nextGaussian() * 5;
+            y += random.nextGaussian();
+            z += random.nextGaussian() * 5;
+            keyframe.setValue(CameraProperties.POSITION, Triple.of(x, y, z));
+            keyframe.setValue(CameraProperties.ROTATION, Triple.of(
+                    (float) (random.nextDouble() * 360 - 180),
+                    (float) (random.nextDouble() * 180 - 90),
+                    0f));
+            time += 200 + random.nextInt(2000);
+        }
+
+        // Replay Mod shares one interpolator across consecutive segments of the same type.
+        Interpolator spline = new CatmullRomSplineInterpolator(0.5);
+        spline.registerProperty(CameraProperties.POSITION);
+        spline.registerProperty(CameraProperties.ROTATION);
+        Interpolator linear = new LinearInterpolator();
+        linear.registerProperty(CameraProperties.POSITION);
+        linear.registerProperty(CameraProperties.ROTATION);
+        int i = 0;
+        for (PathSegment segment : camera.getSegments()) {
+            segment.setInterpolator(i++ % 7 == 6 ? linear : spline);
+        }
+
+        Interpolator timeInterpolator = new LinearInterpolator();
+        timeInterpolator.registerProperty(TimestampProperty.PROPERTY);
+        timePath.insert(0).setValue(TimestampProperty.PROPERTY, 1000);
+        if (time > 0) timePath.insert(time).setValue(TimestampProperty.PROPERTY, 1000 + (int) time);
+        for (PathSegment segment : timePath.getSegments()) {
+            segment.setInterpolator(timeInterpolator);
+        }
+
+        camera.updateAll();
+        timePath.updateAll();
+    }
+
+    /**
+     * Assert that two timelines have the same keyframes, values and segment
+     * interpolator types, and that interpolators shared between segments of
+     * one are shared between the same segments of the other.
+     */
+    public static void assertEquivalent(Timeline expected, Timeline actual) {
+        List<Path> expectedPaths = List.copyOf(expected.getPaths());
+        List<Path> actualPaths = List.copyOf(actual.getPaths());
+        assertEquals(expectedPaths.size(), actualPaths.size(), "path count");
+
+        for (int p = 0; p < expectedPaths.size(); p++) {
+            Path expectedPath = expectedPaths.get(p);
+            Path actualPath = actualPaths.get(p);
+            assertEquals(expectedPath.isActive(), actualPath.isActive());
+
+            List<Keyframe> expectedKeyframes = List.copyOf(expectedPath.getKeyframes());
+            List<Keyframe> actualKeyframes = List.copyOf(actualPath.getKeyframes());
+            assertEquals(expectedKeyframes.size(), actualKeyframes.size(), "keyframe count");
+            for (int k = 0; k < expectedKeyframes.size(); k++) {
+                Keyframe e = expectedKeyframes.get(k);
+                Keyframe a = actualKeyframes.get(k);
+                assertEquals(e.getTime(), a.getTime());
+                assertEquals(e.getValue(CameraProperties.POSITION), a.getValue(CameraProperties.POSITION));
+                assertEquals(e.getValue(CameraProperties.ROTATION), a.getValue(CameraProperties.ROTATION));
+                assertEquals(e.getValue(TimestampProperty.PROPERTY), a.getValue(TimestampProperty.PROPERTY));
+            }
+
+            List<PathSegment> expectedSegments = List.copyOf(expectedPath.getSegments());
+            Iterator<PathSegment> actualSegments = actualPath.getSegments().iterator();
+            Interpolator prevExpected = null;
+            Interpolator prevActual = null;
+            for (PathSegment segment : expectedSegments) {
+                Interpolator e = segment.getInterpolator();
+                Interpolator a = actualSegments.next().getInterpolator();
+                assertEquals(e.getClass(), a.getClass());
+                assertEquals(e.getKeyframeProperties().size(), a.getKeyframeProperties().size());
+                if (e instanceof CatmullRomSplineInterpolator catmullRom) {
+                    assertEquals(catmullRom.getAlpha(), ((CatmullRomSplineInterpolator) a).getAlpha());
+                }
+                if (prevExpected != null) {
+                    assertEquals(e == prevExpected, a == prevActual, "interpolator sharing");
+                }
+                prevExpected = e;
+                prevActual = a;
+            }
+        }
+    }
+
+    /**
+     * Assert that two baked timelines interpolate to the same values.
+     */
+    public static void assertSameSamples(Timeline expected, Timeline actual, long step) {
+        Iterator<Path> actualPaths = actual.getPaths().iterator();
+        for (Path expectedPath : expected.getPaths()) {
+            Path actualPath = actualPaths.next();
+            long end = expectedPath.getKeyframes().isEmpty() ? 0
+                    : List.copyOf(expectedPath.getKeyframes()).get(expectedPath.getKeyframes().size() - 1).getTime();
+            for (long t = 0; t <= end; t += step) {
+                assertEquals(expectedPath.getValue(CameraProperties.POSITION, t),
+                        actualPath.getValue(CameraProperties.POSITION, t), "position at " + t);
+                assertEquals(expectedPath.getValue(CameraProperties.ROTATION, t),
+                        actualPath.getValue(CameraProperties.ROTATION, t), "rotation at " + t);
+                assertEquals(expectedPath.getValue(TimestampProperty.PROPERTY, t),
+                        actualPath.getValue(TimestampProperty.PROPERTY, t), "timestamp at " + t);
+            }
+        }
+        assertFalse(actualPaths.hasNext(), "path count");
+    }
+}
@@ -0,0 +1,245 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.igrium.replayeditorplus.TestScheduler;
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.replaystudio.pathing.interpolation.Interpolator;
+import com.replaymod.replaystudio.pathing.interpolation.LinearInterpolator;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+public class TimelineAutosaveTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    @TempDir
+    java.nio.file.Path directory;
+
+    private final TestScheduler scheduler = new TestScheduler();
+
+    /**
+     * Wait for a future, running the scheduler like the render thread would.
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        long deadline = System.nanoTime() + TIMEOUT;
+        while (!future.isDone()) {
+            scheduler.runFrame();
+            if (System.nanoTime() > deadline) fail("Timed out waiting for autosave.");
+            LockSupport.parkNanos(1_000_000);
+        }
+        // Run whatever the future's completion submitted.
+        scheduler.runFrame();
+        return future.join();
+    }
+
+    private TimelineAutosave start(SPTimeline timeline, boolean expectRecovered) {
+        TimelineAutosave autosave = new TimelineAutosave(directory, () -> timeline, scheduler);
+        assertEquals(expectRecovered, await(autosave.start()), "recovered");
+        return autosave;
+    }
+
+    private java.nio.file.Path file(String name) {
+        return directory.resolve(name);
+    }
+
+    private static List<Keyframe> cameraKeyframes(SPTimeline timeline) {
+        return List.copyOf(timeline.getPositionPath().getKeyframes());
+    }
+
+    private static void moveCamera(SPTimeline timeline, int index, double dx) {
+        Keyframe keyframe = cameraKeyframes(timeline).get(index);
+        Triple<Double, Double, Double> pos = keyframe.getValue(CameraProperties.POSITION).orElseThrow();
+        keyframe.setValue(CameraProperties.POSITION, Triple.of(pos.getLeft() + dx, pos.getMiddle(), pos.getRight()));
+    }
+
+    /**
+     * Make one of each kind of edit the journal records.
+     */
+    private static void editEverything(SPTimeline timeline) {
+        Path path = timeline.getPositionPath();
+
+        // Put: change a value.
+        moveCamera(timeline, 2, 10);
+
+        // Remove a keyframe.
+        path.remove(cameraKeyframes(timeline).get(5), true);
+
+        // Move a keyframe to another time.
+        Keyframe moved = cameraKeyframes(timeline).get(8);
+        Keyframe copy = path.insert(moved.getTime() + 50);
+        copy.setValue(CameraProperties.POSITION, moved.getValue(CameraProperties.POSITION).orElseThrow());
+        copy.setValue(CameraProperties.ROTATION, moved.getValue(CameraProperties.ROTATION).orElseThrow());
+        path.remove(moved, true);
+
+        // Segments: give one segment its own interpolator.
+        Interpolator linear = new LinearInterpolator();
+        linear.registerProperty(CameraProperties.POSITION);
+        linear.registerProperty(CameraProperties.ROTATION);
+        path.getSegments().iterator().next().setInterpolator(linear);
+    }
+
+    @Test
+    public void testRecoverJournal() throws IOException {
+        SPTimeline timeline = TestTimelines.createSP(30, 1);
+        TimelineAutosave autosave = start(timeline, false);
+
+        editEverything(timeline);
+        await(autosave.flush());
+        assertTrue(Files.size(file(TimelineAutosave.JOURNAL_FILE)) > 0, "edits are journaled");
+
+        // The editor crashed without closing the autosave.
+        SPTimeline reopened = TestTimelines.createSP(30, 1);
+        start(reopened, true);
+        TestTimelines.assertEquivalent(timeline.getTimeline(), reopened.getTimeline());
+    }
+
+    @Test
+    public void testTruncatedRecord() throws IOException {
+        SPTimeline timeline = TestTimelines.createSP(30, 2);
+        TimelineAutosave autosave = start(timeline, false);
+
+        moveCamera(timeline, 1, 5);
+        await(autosave.flush());
+        Timeline expected = TimelineCloner.clone(timeline, timeline.getTimeline());
+
+        moveCamera(timeline, 3, 5);
+        await(autosave.flush());
+
+        // A crash cut the last record short.
+        java.nio.file.Path journal = file(TimelineAutosave.JOURNAL_FILE);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        SPTimeline reopened = TestTimelines.createSP(30, 2);
+        start(reopened, true);
+        TestTimelines.assertEquivalent(expected, reopened.getTimeline());
+    }
+
+    @Test
+    public void testCorruptRecord() throws IOException {
+        SPTimeline timeline = TestTimelines.createSP(30, 3);
+        TimelineAutosave autosave = start(timeline, false);
+
+        moveCamera(timeline, 1, 5);
+        await(autosave.flush());
+        Timeline expected = TimelineCloner.clone(timeline, timeline.getTimeline());
+
+        moveCamera(timeline, 3, 5);
+        await(autosave.flush());
+
+        // Flip a bit in the last record's payload so its CRC doesn't match.
+        java.nio.file.Path journal = file(TimelineAutosave.JOURNAL_FILE);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            last.put(0, (byte) (last.get(0) ^ 1));
+            last.rewind();
+            channel.write(last, channel.size() - 1);
+        }
+
+        SPTimeline reopened = TestTimelines.createSP(30, 3);
+        start(reopened, true);
+        TestTimelines.assertEquivalent(expected, reopened.getTimeline());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        SPTimeline timeline = TestTimelines.createSP(2000, 4);
+        long original = TimelineFingerprint.ofContents(timeline.getTimeline());
+        TimelineAutosave autosave = start(timeline, false);
+
+        // Rewrite every keyframe until the journal outgrows its threshold.
+        for (int pass = 0; pass < 6; pass++) {
+            for (Keyframe keyframe : timeline.getPositionPath().getKeyframes()) {
+                Triple<Double, Double, Double> pos = keyframe.getValue(CameraProperties.POSITION).orElseThrow();
+                keyframe.setValue(CameraProperties.POSITION, Triple.of(pos.getLeft() + 1, pos.getMiddle(), pos.getRight()));
+            }
+            await(autosave.flush());
+        }
+
+        java.nio.file.Path journal = file(TimelineAutosave.JOURNAL_FILE);
+        assertTrue(!Files.exists(journal) || Files.size(journal) < TimelineAutosave.COMPACT_THRESHOLD,
+                "journal was compacted");
+        Timeline snapshot = TimelineBinaryFormat.read(file(TimelineAutosave.SNAPSHOT_FILE)).decode("", timeline);
+        assertNotEquals(original, TimelineFingerprint.ofContents(snapshot), "snapshot was rewritten");
+
+        SPTimeline reopened = TestTimelines.createSP(2000, 4);
+        start(reopened, true);
+        TestTimelines.assertEquivalent(timeline.getTimeline(), reopened.getTimeline());
+    }
+
+    @Test
+    public void testUnchangedIsNotRecovered() {
+        start(TestTimelines.createSP(30, 5), false);
+
+        // The editor crashed, but there were no edits to lose.
+        start(TestTimelines.createSP(30, 5), false);
+    }
+
+    @Test
+    public void testCleanCloseIsNotRecovered() {
+        SPTimeline timeline = TestTimelines.createSP(30, 6);
+        TimelineAutosave autosave = start(timeline, false);
+        editEverything(timeline);
+        await(autosave.close());
+        assertTrue(Files.exists(file(TimelineAutosave.CLEAN_FILE)));
+
+        // The replay had the edits, and the timeline was changed since then.
+        SPTimeline reopened = TestTimelines.createSP(30, 6);
+        start(reopened, false);
+        TestTimelines.assertEquivalent(TestTimelines.createSP(30, 6).getTimeline(), reopened.getTimeline());
+        assertFalse(Files.exists(file(TimelineAutosave.CLEAN_FILE)), "the new session isn't clean yet");
+    }
+
+    @Test
+    public void testSaveMarksClean() {
+        SPTimeline timeline = TestTimelines.createSP(30, 7);
+        TimelineAutosave autosave = start(timeline, false);
+
+        await(autosave.save());
+        assertTrue(Files.exists(file(TimelineAutosave.CLEAN_FILE)));
+        assertTrue(Files.exists(file(TimelineAutosave.SAVED_FILE)));
+
+        moveCamera(timeline, 0, 1);
+        await(autosave.flush());
+        assertFalse(Files.exists(file(TimelineAutosave.CLEAN_FILE)), "an edit after saving isn't clean");
+    }
+
+    @Test
+    public void testReplaceContents() {
+        Timeline target = TestTimelines.createSP(10, 8).getTimeline();
+        Timeline source = TestTimelines.createSP(40, 9).getTimeline();
+
+        TimelineAutosave.replaceContents(target, source);
+        TestTimelines.assertEquivalent(source, target);
+        TestTimelines.assertSameSamples(source, target, 37);
+
+        PathSegment sourceSegment = source.getPaths().get(1).getSegments().iterator().next();
+        PathSegment targetSegment = target.getPaths().get(1).getSegments().iterator().next();
+        assertNotSame(sourceSegment.getInterpolator(), targetSegment.getInterpolator());
+    }
+}
@@ -0,0 +1,157 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+
+public class TimelineBinaryFormatTest {
+
+    @TempDir
+    java.nio.file.Path tempDir;
+
+    private static Map<String, Timeline> createTimelines() {
+        Map<String, Timeline> timelines = new LinkedHashMap<>();
+        timelines.put("", TestTimelines.create(50, 1));
+        timelines.put("large", TestTimelines.create(500, 2));
+        timelines.put("single", TestTimelines.create(1, 3));
+        timelines.put("empty", TestTimelines.REGISTRY.createTimeline());
+        return timelines;
+    }
+
+    private static byte[] encode(Map<String, Timeline> timelines) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TimelineBinaryFormat.write(timelines, out);
+        return out.toByteArray();
+    }
+
+    private static void assertDecodes(Map<String, Timeline> expected, MappedTimelineFile file) throws IOException {
+        assertEquals(List.copyOf(expected.keySet()), List.copyOf(file.getTimelineNames()));
+        for (Map.Entry<String, Timeline> entry : expected.entrySet()) {
+            Timeline decoded = file.decode(entry.getKey(), TestTimelines.REGISTRY);
+            TestTimelines.assertEquivalent(entry.getValue(), decoded);
+
+            for (Path path : decoded.getPaths()) {
+                path.updateAll();
+            }
+            TestTimelines.assertSameSamples(entry.getValue(), decoded, 37);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Map<String, Timeline> timelines = createTimelines();
+        assertDecodes(timelines, new MappedTimelineFile(ByteBuffer.wrap(encode(timelines))));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        Map<String, Timeline> timelines = createTimelines();
+        java.nio.file.Path file = tempDir.resolve("timelines.retl");
+        TimelineBinaryFormat.write(timelines, file);
+        assertDecodes(timelines, TimelineBinaryFormat.open(file));
+        assertDecodes(timelines, TimelineBinaryFormat.read(file));
+    }
+
+    @Test
+    public void testColumns() throws IOException {
+        Timeline timeline = TestTimelines.create(100, 4);
+        MappedTimelineFile file = new MappedTimelineFile(ByteBuffer.wrap(encode(Map.of("", timeline))));
+
+        List<Path> paths = List.copyOf(timeline.getPaths());
+        assertEquals(paths.size(), file.getPathCount(""));
+
+        List<Keyframe> camera = List.copyOf(paths.get(0).getKeyframes());
+        assertEquals(camera.size(), file.getKeyframeCount("", 0));
+
+        LongBuffer times = file.getTimes("", 0);
+        DoubleBuffer x = file.getColumn("", 0, CameraProperties.POSITION.getId(), 0);
+        DoubleBuffer z = file.getColumn("", 0, CameraProperties.POSITION.getId(), 2);
+        DoubleBuffer yaw = file.getColumn("", 0, CameraProperties.ROTATION.getId(), 0);
+        assertEquals(camera.size(), times.remaining());
+        assertEquals(camera.size(), x.remaining());
+
+        for (int i = 0; i < camera.size(); i++) {
+            Keyframe keyframe = camera.get(i);
+            Triple<Double, Double, Double> position = keyframe.getValue(CameraProperties.POSITION).orElseThrow();
+            Triple<Float, Float, Float> rotation = keyframe.getValue(CameraProperties.ROTATION).orElseThrow();
+            assertEquals(keyframe.getTime(), times.get(i));
+            assertEquals(position.getLeft(), x.get(i));
+            assertEquals(position.getRight(), z.get(i));
+            assertEquals(rotation.getLeft(), (float) yaw.get(i));
+        }
+
+        List<Keyframe> timePath = List.copyOf(paths.get(1).getKeyframes());
+        DoubleBuffer timestamps = file.getColumn("", 1, TimestampProperty.PROPERTY.getId(), 0);
+        for (int i = 0; i < timePath.size(); i++) {
+            assertEquals(timePath.get(i).getValue(TimestampProperty.PROPERTY).orElseThrow(),
+                    (int) timestamps.get(i));
+        }
+
+        assertNull(file.getColumn("", 0, TimestampProperty.PROPERTY.getId(), 0));
+        assertNull(file.getColumn("", 0, CameraProperties.POSITION.getId(), 3));
+        assertNull(file.getColumn("", 0, "nonexistent", 0));
+        assertThrows(IllegalArgumentException.class, () -> file.getPathCount("nonexistent"));
+    }
+
+    @Test
+    public void testJsonConversion() throws IOException {
+        Map<String, Timeline> timelines = createTimelines();
+        TimelineSerialization serialization = new TimelineSerialization(TestTimelines.REGISTRY, null);
+        java.nio.file.Path file = tempDir.resolve("converted.retl");
+
+        TimelineBinaryFormat.convertFromJson(TestTimelines.REGISTRY, serialization.serialize(timelines), file);
+        assertDecodes(timelines, TimelineBinaryFormat.open(file));
+
+        String json = TimelineBinaryFormat.convertToJson(TestTimelines.REGISTRY, file);
+        Map<String, Timeline> converted = serialization.deserialize(json);
+        assertEquals(timelines.keySet(), converted.keySet());
+        for (Map.Entry<String, Timeline> entry : timelines.entrySet()) {
+            TestTimelines.assertEquivalent(entry.getValue(), converted.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testInvalidFiles() throws IOException {
+        byte[] bytes = encode(createTimelines());
+
+        for (int length : new int[] { 0, 8, bytes.length / 2, bytes.length - 1 }) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> new MappedTimelineFile(ByteBuffer.wrap(truncated)),
+                    "truncated to " + length);
+        }
+
+        byte[] badOffset = bytes.clone();
+        ByteBuffer.wrap(badOffset).putLong(bytes.length - 12, bytes.length);
+        assertThrows(IOException.class, () -> new MappedTimelineFile(ByteBuffer.wrap(badOffset)));
+
+        byte[] badVersion = bytes.clone();
+        ByteBuffer.wrap(badVersion).putInt(4, TimelineBinaryFormat.VERSION + 1);
+        assertThrows(IOException.class, () -> new MappedTimelineFile(ByteBuffer.wrap(badVersion)));
+
+        java.nio.file.Path json = tempDir.resolve("timelines.json");
+        Files.writeString(json, "{}");
+        assertThrows(IOException.class, () -> TimelineBinaryFormat.open(json));
+    }
+}
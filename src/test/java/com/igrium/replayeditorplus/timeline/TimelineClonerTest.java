@@ -0,0 +1,57 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import com.replaymod.replaystudio.pathing.path.Path;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.replaystudio.pathing.serialize.TimelineSerialization;
+
+public class TimelineClonerTest {
+
+    private static Timeline serializationClone(Timeline timeline) throws IOException {
+        TimelineSerialization serialization = new TimelineSerialization(TestTimelines.REGISTRY, null);
+        String serialized = serialization.serialize(Collections.singletonMap("", timeline));
+        return serialization.deserialize(serialized).get("");
+    }
+
+    private static void updateAll(Timeline timeline) {
+        for (Path path : timeline.getPaths()) {
+            path.updateAll();
+        }
+    }
+
+    @Test
+    public void testMatchesSerialization() throws IOException {
+        for (int keyframes : new int[] { 0, 1, 2, 3, 50, 500 }) {
+            Timeline source = TestTimelines.create(keyframes, keyframes);
+
+            Timeline expected = serializationClone(source);
+            Timeline actual = TimelineCloner.clone(TestTimelines.REGISTRY, source);
+            TestTimelines.assertEquivalent(expected, actual);
+
+            updateAll(expected);
+            updateAll(actual);
+            TestTimelines.assertSameSamples(expected, actual, 37);
+        }
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        Timeline source = TestTimelines.create(20, 1);
+        Timeline copy = TimelineCloner.clone(TestTimelines.REGISTRY, source);
+
+        Path sourcePath = source.getPaths().get(0);
+        Path copyPath = copy.getPaths().get(0);
+        assertNotSame(sourcePath.getKeyframes().iterator().next(), copyPath.getKeyframes().iterator().next());
+        assertNotSame(sourcePath.getSegments().iterator().next().getInterpolator(),
+                copyPath.getSegments().iterator().next().getInterpolator());
+
+        copyPath.remove(copyPath.getKeyframes().iterator().next(), true);
+        TestTimelines.assertEquivalent(source, TestTimelines.create(20, 1));
+    }
+}
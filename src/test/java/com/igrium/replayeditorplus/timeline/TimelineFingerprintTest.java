@@ -0,0 +1,62 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.replaystudio.pathing.path.PathSegment;
+import com.replaymod.replaystudio.pathing.path.Timeline;
+
+public class TimelineFingerprintTest {
+
+    private static long positionHash(double x, double y, double z) {
+        Timeline timeline = TestTimelines.REGISTRY.createTimeline();
+        Keyframe keyframe = timeline.createPath().insert(0);
+        keyframe.setValue(CameraProperties.POSITION, Triple.of(x, y, z));
+        return TimelineFingerprint.valuesHash(keyframe);
+    }
+
+    @Test
+    public void testSwappedComponents() {
+        assertNotEquals(positionHash(1, 2, 3), positionHash(2, 1, 3));
+        assertNotEquals(positionHash(1, 2, 3), positionHash(3, 2, 1));
+    }
+
+    @Test
+    public void testDiagonalMove() {
+        assertNotEquals(positionHash(5, 5, 0), positionHash(7, 7, 0));
+    }
+
+    @Test
+    public void testEqualValues() {
+        assertEquals(positionHash(1, 2, 3), positionHash(1, 2, 3));
+    }
+
+    @Test
+    public void testTimelineEdits() {
+        Timeline timeline = TestTimelines.create(30, 8);
+        long before = TimelineFingerprint.of(timeline);
+        assertEquals(before, TimelineFingerprint.of(timeline));
+
+        Keyframe keyframe = timeline.getPaths().get(0).getKeyframes().iterator().next();
+        Triple<Double, Double, Double> pos = keyframe.getValue(CameraProperties.POSITION).orElseThrow();
+        keyframe.setValue(CameraProperties.POSITION, Triple.of(pos.getMiddle(), pos.getLeft(), pos.getRight()));
+        assertNotEquals(before, TimelineFingerprint.of(timeline));
+    }
+
+    @Test
+    public void testContentsOfCopy() {
+        Timeline timeline = TestTimelines.create(30, 9);
+        Timeline copy = TimelineCloner.clone(TestTimelines.REGISTRY, timeline);
+        assertEquals(TimelineFingerprint.ofContents(timeline), TimelineFingerprint.ofContents(copy));
+
+        // Give one segment its own copy of a shared interpolator.
+        PathSegment segment = copy.getPaths().get(0).getSegments().iterator().next();
+        segment.setInterpolator(TimelineCloner.cloneInterpolator(copy, segment.getInterpolator()));
+        assertNotEquals(TimelineFingerprint.ofContents(timeline), TimelineFingerprint.ofContents(copy));
+    }
+}
@@ -0,0 +1,89 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+import com.replaymod.replaystudio.pathing.path.Timeline;
+import com.replaymod.simplepathing.SPTimeline;
+
+public class TimelinePoolTest {
+
+    /**
+     * An executor that only runs its tasks when asked, like one that's still
+     * busy baking.
+     */
+    private static class SlowExecutor implements Executor {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+
+    @Test
+    public void testWarmWhilePreparing() {
+        SlowExecutor executor = new SlowExecutor();
+        TimelinePool pool = new TimelinePool(4);
+        pool.put("take", TestTimelines.createSP(200, 1));
+
+        for (int i = 0; i < 10; i++) {
+            pool.warm(executor);
+        }
+        assertEquals(1, executor.tasks.size(), "bakes queued");
+
+        executor.runAll();
+        pool.warm(executor);
+        assertTrue(executor.tasks.isEmpty(), "a prepared, unedited timeline is baked again");
+    }
+
+    @Test
+    public void testPrepareWhilePreparing() {
+        SlowExecutor executor = new SlowExecutor();
+        PlaybackPreparer preparer = new PlaybackPreparer();
+        SPTimeline timeline = TestTimelines.createSP(200, 2);
+
+        CompletableFuture<Timeline> first = preparer.prepareAsync(timeline, false, executor);
+        CompletableFuture<Timeline> second = preparer.prepareAsync(timeline, false, executor);
+        assertTrue(preparer.isPreparing());
+        assertEquals(1, preparer.getCopyCount(), "copies");
+        assertEquals(1, executor.tasks.size(), "bakes queued");
+
+        // Cancelling one caller's future doesn't cancel the preparation.
+        first.cancel(false);
+        executor.runAll();
+        assertFalse(preparer.isPreparing());
+        assertSame(second.join(), preparer.prepareAsync(timeline, false, executor).join());
+        assertEquals(1, preparer.getCopyCount(), "copies");
+    }
+
+    @Test
+    public void testPrepareWithDifferentFlags() {
+        SlowExecutor executor = new SlowExecutor();
+        PlaybackPreparer preparer = new PlaybackPreparer();
+        SPTimeline timeline = TestTimelines.createSP(20, 3);
+
+        preparer.prepareAsync(timeline, false, executor);
+        CompletableFuture<Timeline> latest = preparer.prepareAsync(timeline, true, executor);
+        assertEquals(2, executor.tasks.size(), "bakes queued");
+
+        executor.runAll();
+        assertFalse(latest.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,205 @@
+package com.igrium.replayeditorplus.timeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+
+import com.igrium.replayeditorplus.mixins.TimelineImplAccessor;
+import com.replaymod.pathing.properties.CameraProperties;
+import com.replaymod.pathing.properties.TimestampProperty;
+import com.replaymod.replaystudio.pathing.change.Change;
+import com.replaymod.replaystudio.pathing.change.UpdateKeyframeProperties;
+import com.replaymod.replaystudio.pathing.impl.TimelineImpl;
+import com.replaymod.replaystudio.pathing.path.Keyframe;
+import com.replaymod.simplepathing.SPTimeline;
+
+public class UndoHistoryTest {
+
+    private static final long EDIT_COST = UndoHistory.CHANGE_OVERHEAD + UndoHistory.KEYFRAME_COST;
+
+    /**
+     * A timeline doing by hand what the mixins on {@link TimelineImpl} do in
+     * game.
+     */
+    private static class TrackedTimeline extends TimelineImpl implements TimelineImplAccessor, ObservableTimeline {
+        Consumer<Change> listener;
+
+        TrackedTimeline() {
+            registerProperty(CameraProperties.POSITION);
+            registerProperty(CameraProperties.ROTATION);
+            registerProperty(TimestampProperty.PROPERTY);
+        }
+
+        @Override
+        public void setChangeListener(Consumer<Change> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void pushChange(Change change) {
+            if (listener != null) listener.accept(change);
+            super.pushChange(change);
+        }
+
+        @Override
+        public Deque<Change> getUndoStack() {
+            return getStack("undoStack");
+        }
+
+        @Override
+        public Deque<Change> getRedoStack() {
+            return getStack("redoStack");
+        }
+
+        @SuppressWarnings("unchecked")
+        private Deque<Change> getStack(String name) {
+            try {
+                Field field = TimelineImpl.class.getDeclaredField(name);
+                field.setAccessible(true);
+                return (Deque<Change>) field.get(this);
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static double getX(SPTimeline timeline) {
+        Keyframe keyframe = timeline.getPositionPath().getKeyframes().iterator().next();
+        return keyframe.getValue(CameraProperties.POSITION).orElseThrow().getLeft();
+    }
+
+    /**
+     * Move the first camera keyframe along the x axis, the way the editor
+     * does: apply a change and push it.
+     */
+    private static void edit(SPTimeline timeline, double dx) {
+        Keyframe keyframe = timeline.getPositionPath().getKeyframes().iterator().next();
+        Triple<Double, Double, Double> pos = keyframe.getValue(CameraProperties.POSITION).orElseThrow();
+        Change change = UpdateKeyframeProperties.create(timeline.getPositionPath(), keyframe)
+                .setValue(CameraProperties.POSITION, Triple.of(pos.getLeft() + dx, pos.getMiddle(), pos.getRight()))
+                .done();
+        change.apply(timeline.getTimeline());
+        timeline.getTimeline().pushChange(change);
+    }
+
+    @Test
+    public void testUndoRedo() {
+        TrackedTimeline timeline = new TrackedTimeline();
+        SPTimeline sp = TestTimelines.createSP(timeline, 20, 1);
+        UndoHistory history = new UndoHistory(() -> sp, Long.MAX_VALUE);
+        history.onFrame();
+        assertFalse(history.canUndo());
+        assertEquals(0, history.getEstimatedSize());
+
+        double x = getX(sp);
+        for (int i = 0; i < 3; i++) {
+            edit(sp, 1);
+        }
+        history.onFrame();
+        assertTrue(history.canUndo());
+        assertFalse(history.canRedo());
+        assertEquals(3 * EDIT_COST, history.getEstimatedSize());
+
+        assertTrue(history.undo());
+        assertTrue(history.undo());
+        assertEquals(x + 1, getX(sp));
+        assertTrue(history.canRedo());
+        // Undo moves changes to the redo stack, which is still held.
+        assertEquals(3 * EDIT_COST, history.getEstimatedSize());
+
+        assertTrue(history.redo());
+        assertEquals(x + 2, getX(sp));
+
+        // A new edit discards what's left to redo.
+        edit(sp, 10);
+        history.onFrame();
+        assertFalse(history.canRedo());
+        assertEquals(3 * EDIT_COST, history.getEstimatedSize());
+        assertFalse(history.redo());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(history.undo());
+        }
+        assertFalse(history.undo());
+        assertEquals(x, getX(sp));
+    }
+
+    @Test
+    public void testBudget() {
+        TrackedTimeline timeline = new TrackedTimeline();
+        SPTimeline sp = TestTimelines.createSP(timeline, 20, 2);
+        UndoHistory history = new UndoHistory(() -> sp, 5 * EDIT_COST);
+        history.onFrame();
+
+        double x = getX(sp);
+        for (int i = 0; i < 20; i++) {
+            edit(sp, 1);
+            history.onFrame();
+        }
+        assertEquals(5, timeline.getUndoStack().size());
+        assertEquals(5 * EDIT_COST, history.getEstimatedSize());
+
+        // The oldest edits were dropped, so undo stops short of the start.
+        for (int i = 0; i < 5; i++) {
+            assertTrue(history.undo());
+        }
+        assertFalse(history.undo());
+        assertEquals(x + 15, getX(sp));
+        assertEquals(5, timeline.getRedoStack().size());
+
+        // Redos are dropped too, furthest first, but the latest undo is kept.
+        history.redo();
+        history.setMemoryBudget(0);
+        history.onFrame();
+        assertEquals(1, timeline.getUndoStack().size());
+        assertEquals(0, timeline.getRedoStack().size());
+        assertEquals(EDIT_COST, history.getEstimatedSize());
+    }
+
+    @Test
+    public void testClearedElsewhere() {
+        TrackedTimeline timeline = new TrackedTimeline();
+        SPTimeline sp = TestTimelines.createSP(timeline, 20, 3);
+        UndoHistory history = new UndoHistory(() -> sp, Long.MAX_VALUE);
+        history.onFrame();
+
+        edit(sp, 1);
+        edit(sp, 1);
+        history.onFrame();
+        assertEquals(2 * EDIT_COST, history.getEstimatedSize());
+
+        // Reverting a timeline clears its history without pushing anything.
+        timeline.getUndoStack().clear();
+        history.onFrame();
+        assertEquals(0, history.getEstimatedSize());
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void testSwitchTimelines() {
+        TrackedTimeline first = new TrackedTimeline();
+        TrackedTimeline second = new TrackedTimeline();
+        List<SPTimeline> timelines = List.of(TestTimelines.createSP(first, 20, 4),
+                TestTimelines.createSP(second, 20, 5));
+        int[] current = { 0 };
+        UndoHistory history = new UndoHistory(() -> timelines.get(current[0]), Long.MAX_VALUE);
+        history.onFrame();
+        assertTrue(first.listener != null);
+
+        edit(timelines.get(0), 1);
+        current[0] = 1;
+        history.onFrame();
+        assertTrue(first.listener == null, "the old timeline stops reporting");
+        assertTrue(second.listener != null);
+        assertEquals(0, history.getEstimatedSize());
+        assertFalse(history.canUndo());
+    }
+}
@@ -0,0 +1,121 @@
+package com.igrium.replayeditorplus.ui.controls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RowPackerTest {
+
+    private record Box(double minX, double maxX, double minY, double maxY) {
+        boolean overlaps(double minX, double maxX, double minY, double maxY) {
+            return minX < this.maxX && this.minX < maxX && minY < this.maxY && this.minY < maxY;
+        }
+    }
+
+    /**
+     * The linear-scan loop <code>TimelineUI</code> used before the packer:
+     * move below the first overlapping box until nothing overlaps.
+     */
+    private static class ReferencePacker {
+        final List<Box> placed = new ArrayList<>();
+
+        double place(double minX, double maxX, double startY, double height) {
+            double y = startY;
+            Box overlapping;
+            while ((overlapping = findOverlap(minX, maxX, y, y + height)) != null) {
+                y = overlapping.maxY();
+            }
+            placed.add(new Box(minX, maxX, y, y + height));
+            return y;
+        }
+
+        Box findOverlap(double minX, double maxX, double minY, double maxY) {
+            for (Box box : placed) {
+                if (box.overlaps(minX, maxX, minY, maxY)) return box;
+            }
+            return null;
+        }
+    }
+
+    @Test
+    public void testStacksOverlappingBoxes() {
+        RowPacker packer = new RowPacker();
+        assertEquals(0, packer.place(0, 10, 0, 5));
+        assertEquals(5, packer.place(5, 15, 0, 5));
+        assertEquals(10, packer.place(8, 12, 0, 5));
+        // Touching edges don't overlap.
+        assertEquals(0, packer.place(10, 20, 0, 5));
+    }
+
+    @Test
+    public void testFillsGaps() {
+        RowPacker packer = new RowPacker();
+        packer.place(0, 10, 0, 5);
+        packer.place(0, 10, 10, 5);
+        assertEquals(5, packer.place(2, 8, 0, 5));
+        assertEquals(15, packer.place(2, 8, 0, 5));
+    }
+
+    @Test
+    public void testClear() {
+        RowPacker packer = new RowPacker();
+        packer.place(0, 10, 0, 5);
+        packer.clear();
+        assertEquals(0, packer.place(0, 10, 0, 5));
+    }
+
+    @Test
+    public void testMatchesReference() {
+        Random random = new Random(4);
+        for (int run = 0; run < 50; run++) {
+            RowPacker packer = new RowPacker();
+            ReferencePacker reference = new ReferencePacker();
+            int count = 1 + random.nextInt(500);
+            double span = 10 + random.nextDouble() * 2000;
+            for (int i = 0; i < count; i++) {
+                double minX = Math.floor(random.nextDouble() * span);
+                double width = 1 + Math.floor(random.nextDouble() * 40);
+                double height = 1 + Math.floor(random.nextDouble() * 20);
+                double startY = random.nextInt(4) == 0 ? Math.floor(random.nextDouble() * 30) : 0;
+
+                double expected = reference.place(minX, minX + width, startY, height);
+                assertEquals(expected, packer.place(minX, minX + width, startY, height),
+                        "Box " + i + " of run " + run);
+            }
+        }
+    }
+
+    @Test
+    public void testWideBoxAmongNarrow() {
+        Random random = new Random(5);
+        RowPacker packer = new RowPacker();
+        ReferencePacker reference = new ReferencePacker();
+
+        // A wide box somewhere in the middle, like a long marker between keyframes.
+        for (int i = 0; i < 2000; i++) {
+            double minX = i * 5 + Math.floor(random.nextDouble() * 10);
+            double width = i == 700 ? 8000 : 1 + Math.floor(random.nextDouble() * 8);
+            double expected = reference.place(minX, minX + width, 0, 5);
+            assertEquals(expected, packer.place(minX, minX + width, 0, 5), "Box " + i);
+        }
+    }
+
+    @Test
+    public void testWideBoxDoesNotSlowPacking() {
+        // With every lookup widened to the widest box, this would visit every
+        // placed box for each new one.
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            RowPacker packer = new RowPacker();
+            assertEquals(0, packer.place(0, 4_000_000, 0, 5));
+            for (int i = 0; i < 200_000; i++) {
+                assertEquals(5, packer.place(i * 20, i * 20 + 10, 0, 5));
+            }
+        });
+    }
+}